@@ -0,0 +1,86 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchingBenchmark.
+ *
+ * Measures grouping a transaction of documents into batches, as done by
+ * commitAddContentToSolr, by document count alone and by count and size.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchingBenchmark
+{
+	@Param({"10", "100", "1000"})
+	public int batchSize;
+
+	@Param({"0", "1048576"})
+	public long maxBatchBytes;
+
+	private List<SolrInputDocument> documents;
+
+	@Setup
+	public void setUp()
+	{
+		IndexDataGenerator generator = new IndexDataGenerator(42, "5");
+		this.documents = new ArrayList<>(5000);
+		for (int i = 0; i < 5000; i++)
+		{
+			this.documents.add(SolrIndexer.constructInputDocument(generator.page(10, 500)));
+		}
+	}
+
+	@Benchmark
+	public void group(Blackhole blackhole)
+	{
+		DocumentBatcher batcher = new DocumentBatcher(this.batchSize, this.maxBatchBytes);
+		for (SolrInputDocument document : this.documents)
+		{
+			ArrayList<SolrInputDocument> batch = batcher.add(document);
+			if (batch != null)
+			{
+				blackhole.consume(batch);
+			}
+		}
+		blackhole.consume(batcher.flush());
+	}
+}
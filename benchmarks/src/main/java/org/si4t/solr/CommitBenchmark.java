@@ -0,0 +1,141 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.configuration.Configuration;
+import com.tridion.configuration.XMLConfigurationReader;
+import com.tridion.storage.si4t.BinaryIndexData;
+import com.tridion.storage.si4t.SearchIndexData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CommitBenchmark.
+ *
+ * Measures a whole publish transaction end to end: registering the items
+ * and committing them through SolrIndexer to a {@link FakeSolrServer} with
+ * the configured latency per request, and optionally a share of 503
+ * responses to measure the cost of retrying them.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CommitBenchmark
+{
+	private static final String PUBLICATION_ID = "5";
+
+	@Param({"0", "5", "20"})
+	public long latency;
+
+	@Param({"1000"})
+	public int pages;
+
+	@Param({"10"})
+	public int binaries;
+
+	@Param({"10", "100"})
+	public int batchSize;
+
+	@Param({"http"})
+	public String mode;
+
+	@Param({"javabin"})
+	public String requestFormat;
+
+	/**
+	 * Share of the requests answered with a 503, which the dispatcher retries.
+	 */
+	@Param({"0"})
+	public double errorRate;
+
+	private FakeSolrServer server;
+	private SolrIndexer indexer;
+	private List<SearchIndexData> pageData;
+	private List<BinaryIndexData> binaryData;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		this.server = new FakeSolrServer(this.latency, 16).start();
+		this.server.setRecording(false);
+		this.server.setErrorRate(this.errorRate, 503);
+
+		File configFile = File.createTempFile("si4t-solr-benchmark", ".xml");
+		configFile.deleteOnExit();
+		String xml = "<Storage><Indexer Mode=\"" + this.mode + "\" DefaultCoreUrl=\"" + this.server.getCoreUrl("benchmark") +
+				"\" BatchSize=\"" + this.batchSize + "\" RequestFormat=\"" + this.requestFormat +
+				"\" CommitStrategy=\"hard\" RetryBackoff=\"1\"/></Storage>";
+		Files.write(configFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+		Configuration configuration = new XMLConfigurationReader().readConfiguration(configFile.getAbsolutePath());
+
+		this.indexer = new SolrIndexer();
+		this.indexer.configure(configuration);
+
+		IndexDataGenerator generator = new IndexDataGenerator(42, PUBLICATION_ID);
+		this.pageData = generator.pages(this.pages, 10, 500);
+		this.binaryData = new ArrayList<>(this.binaries);
+		for (int i = 0; i < this.binaries; i++)
+		{
+			this.binaryData.add(generator.binary(256 * 1024));
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		System.out.println("Fake Solr received " + this.server.getRequests() + " requests, " +
+				this.server.getBytesReceived() + " bytes");
+		this.indexer.destroy();
+		this.server.stop();
+	}
+
+	@Benchmark
+	public void commit() throws Exception
+	{
+		for (SearchIndexData page : this.pageData)
+		{
+			this.indexer.addItemToIndex(page);
+		}
+		for (BinaryIndexData binary : this.binaryData)
+		{
+			this.indexer.addBinaryToIndex(binary);
+		}
+		this.indexer.commit(PUBLICATION_ID);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.SearchIndexData;
+import com.tridion.storage.si4t.Utils;
+import org.apache.solr.common.SolrInputDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DocumentConstructionBenchmark.
+ *
+ * Measures building Solr documents from index data. The legacy variant
+ * reproduces the construction and logging of si4t-solr 1.5, so the two can
+ * be compared; run with -prof gc and compare gc.alloc.rate.norm, which is
+ * the allocation per document.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentConstructionBenchmark
+{
+	@Param({"10", "50"})
+	public int fields;
+
+	@Param({"200", "2000"})
+	public int bodyWords;
+
+	private List<SearchIndexData> pages;
+	private int next = 0;
+
+	@Setup
+	public void setUp()
+	{
+		this.pages = new IndexDataGenerator(42, "5").pages(1024, fields, bodyWords);
+	}
+
+	@Benchmark
+	public SolrInputDocument construct()
+	{
+		return SolrIndexer.constructInputDocument(this.nextPage());
+	}
+
+	@Benchmark
+	public void constructLegacy(Blackhole blackhole)
+	{
+		SearchIndexData data = this.nextPage();
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("pubdate", "NOW");
+		// The log statements built their message whatever the log level
+		blackhole.consume("Adding Id: " + data.getUniqueIndexId());
+		doc.addField("id", data.getUniqueIndexId());
+		for (Map.Entry<String, ArrayList<Object>> fieldEntry : data.getIndexFields().entrySet())
+		{
+			String fieldName = fieldEntry.getKey();
+			for (Object o : fieldEntry.getValue())
+			{
+				doc.addField(fieldName, o);
+				blackhole.consume("Adding: " + fieldName + ": " + o);
+			}
+		}
+		// addDocuments logged every document at INFO
+		blackhole.consume(Utils.RemoveLineBreaks(doc.toString()));
+		blackhole.consume(doc);
+	}
+
+	private SearchIndexData nextPage()
+	{
+		SearchIndexData page = this.pages.get(this.next);
+		this.next = (this.next + 1) & 1023;
+		return page;
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.request.RequestWriter;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SerializationBenchmark.
+ *
+ * Measures serializing an update request of one batch in the javabin and
+ * XML wire formats. The request size of both formats is printed at setup.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark
+{
+	@Param({"10", "100"})
+	public int batchSize;
+
+	@Param({"200", "2000"})
+	public int bodyWords;
+
+	private UpdateRequest request;
+	private final RequestWriter javabinWriter = new BinaryRequestWriter();
+	private final RequestWriter xmlWriter = new RequestWriter();
+
+	@Setup
+	public void setUp()
+	{
+		IndexDataGenerator generator = new IndexDataGenerator(42, "5");
+		List<SolrInputDocument> documents = new ArrayList<>(batchSize);
+		for (int i = 0; i < batchSize; i++)
+		{
+			documents.add(SolrIndexer.constructInputDocument(generator.page(10, bodyWords)));
+		}
+		this.request = new UpdateRequest();
+		this.request.add(documents);
+		try
+		{
+			System.out.println("Request size: javabin " + this.write(this.javabinWriter).size() + " bytes, XML " +
+					this.write(this.xmlWriter).size() + " bytes");
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream javabin() throws IOException
+	{
+		return this.write(this.javabinWriter);
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream xml() throws IOException
+	{
+		return this.write(this.xmlWriter);
+	}
+
+	private ByteArrayOutputStream write(RequestWriter writer) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+		writer.getContentWriter(this.request).write(out);
+		return out;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AdaptiveBatchSize.
+ *
+ * The batch limits of one Solr url, adapted to the time Solr takes to
+ * process the batches. While add requests take well under the target
+ * latency and fill their batch, the limits grow by a quarter. A request
+ * taking longer than the target shrinks them in proportion, by at most
+ * half, and a failed request halves them. The limits stay within the
+ * configured minimum and maximum.
+ *
+ * A maximum of 0 or less for the bytes leaves the batch size in bytes
+ * unlimited, as in {@link DocumentBatcher}.
+ *
+ * @author agent
+ */
+public class AdaptiveBatchSize
+{
+	private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBatchSize.class);
+	private static final double GROWTH = 1.25;
+	private static final double GROW_BELOW = 0.75;
+
+	private final String url;
+	private final int minDocuments;
+	private final int maxDocuments;
+	private final long minBytes;
+	private final long maxBytes;
+	private final long targetLatency;
+
+	private int documents;
+	private long bytes;
+
+	/**
+	 * @param initialDocuments the documents per batch to start with
+	 * @param targetLatency the time in milliseconds an add request should take at most
+	 */
+	public AdaptiveBatchSize(String url, int initialDocuments, int minDocuments, int maxDocuments, long minBytes,
+							 long maxBytes, long targetLatency)
+	{
+		this.url = url;
+		this.minDocuments = Math.max(1, minDocuments);
+		this.maxDocuments = Math.max(this.minDocuments, maxDocuments);
+		this.minBytes = maxBytes > 0 ? Math.min(Math.max(1, minBytes), maxBytes) : 0;
+		this.maxBytes = maxBytes;
+		this.targetLatency = Math.max(1, targetLatency);
+		this.documents = clamp(initialDocuments, this.minDocuments, this.maxDocuments);
+		this.bytes = maxBytes;
+	}
+
+	public synchronized int getMaxDocuments()
+	{
+		return documents;
+	}
+
+	public synchronized long getMaxBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Adapts the limits to an add request which succeeded.
+	 *
+	 * @param batchDocuments the documents of the batch
+	 * @param batchBytes the estimated size of the batch
+	 * @param latency the time in milliseconds the successful request took, without retries
+	 */
+	public synchronized void onSuccess(int batchDocuments, long batchBytes, long latency)
+	{
+		if (latency > targetLatency)
+		{
+			resize(Math.max(0.5, (double) targetLatency / latency), "took " + latency + "ms");
+		}
+		else if (latency < targetLatency * GROW_BELOW &&
+				(batchDocuments >= documents || (bytes > 0 && batchBytes >= bytes * GROW_BELOW)))
+		{
+			// Only a full batch shows that a larger one would be handled as well
+			resize(GROWTH, "took " + latency + "ms");
+		}
+	}
+
+	/**
+	 * Adapts the limits to an add request which failed.
+	 */
+	public synchronized void onFailure()
+	{
+		resize(0.5, "failed");
+	}
+
+	private void resize(double factor, String reason)
+	{
+		int newDocuments = (int) Math.round(documents * factor);
+		if (factor > 1)
+		{
+			newDocuments = Math.max(newDocuments, documents + 1);
+		}
+		newDocuments = clamp(newDocuments, minDocuments, maxDocuments);
+
+		long newBytes = bytes;
+		if (maxBytes > 0)
+		{
+			newBytes = Math.max(minBytes, Math.min(maxBytes, Math.round(bytes * factor)));
+		}
+
+		if (newDocuments != documents || newBytes != bytes)
+		{
+			if (LOG.isDebugEnabled())
+			{
+				LOG.debug("Batch to " + url + " " + reason + ", batch limit is now " + newDocuments + " documents" +
+						(maxBytes > 0 ? " and " + newBytes + " bytes" : "") + ", was " + documents);
+			}
+			documents = newDocuments;
+			bytes = newBytes;
+		}
+	}
+
+	private static int clamp(int value, int min, int max)
+	{
+		return Math.max(min, Math.min(max, value));
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "AdaptiveBatchSize [url=" + url + ", documents=" + documents + ", bytes=" + bytes + "]";
+	}
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AdmissionController.
+ *
+ * Caps the update requests sent to one Solr url: the amount of requests in
+ * flight, and the documents and bytes sent per second. Callers past a limit
+ * wait their turn in first come, first served order.
+ *
+ * The rates are enforced with token buckets holding one second worth of
+ * tokens. A request larger than that is let through once the bucket is full
+ * again, and the time it overdraws the bucket is made up by the requests after it.
+ *
+ * A limit of 0 or less disables it.
+ *
+ * @author agent
+ */
+public class AdmissionController implements AdmissionControllerMXBean
+{
+	private final String url;
+	private final int maxInFlight;
+	private final Semaphore inFlightPermits;
+	private final TokenBucket documents;
+	private final TokenBucket bytes;
+	// Fair, so callers waiting for the rate limits are admitted in order of arrival
+	private final ReentrantLock rateLock = new ReentrantLock(true);
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder delayed = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+
+	public AdmissionController(String url, int maxInFlight, long documentsPerSecond, long bytesPerSecond)
+	{
+		this.url = url;
+		this.maxInFlight = maxInFlight;
+		this.inFlightPermits = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+		this.documents = documentsPerSecond > 0 ? new TokenBucket(documentsPerSecond) : null;
+		this.bytes = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+	}
+
+	/**
+	 * @return true if any limit is set
+	 */
+	public boolean isLimiting()
+	{
+		return inFlightPermits != null || documents != null || bytes != null;
+	}
+
+	/**
+	 * Waits until a request may be sent. Every successful call must be
+	 * followed by a call to {@link #release()} once the request is done.
+	 *
+	 * @param documentCount the documents the request sends
+	 * @param byteCount the (estimated) bytes the request sends
+	 * @throws InterruptedException when interrupted while waiting
+	 */
+	public void acquire(long documentCount, long byteCount) throws InterruptedException
+	{
+		long start = System.nanoTime();
+		boolean counted = false;
+		try
+		{
+			if (documents != null || bytes != null)
+			{
+				if (!rateLock.tryLock())
+				{
+					counted = this.startWaiting(counted);
+					rateLock.lockInterruptibly();
+				}
+				try
+				{
+					long wait = Math.max(documents != null ? documents.reserve(documentCount) : 0,
+							bytes != null ? bytes.reserve(byteCount) : 0);
+					if (wait > 0)
+					{
+						counted = this.startWaiting(counted);
+						// Holding the lock, so the callers after this one wait in line
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+				}
+				finally
+				{
+					rateLock.unlock();
+				}
+			}
+			if (inFlightPermits != null && !inFlightPermits.tryAcquire())
+			{
+				counted = this.startWaiting(counted);
+				inFlightPermits.acquire();
+			}
+		}
+		finally
+		{
+			if (counted)
+			{
+				waiting.decrementAndGet();
+				waitNanos.add(System.nanoTime() - start);
+			}
+		}
+		inFlight.incrementAndGet();
+		admitted.increment();
+	}
+
+	private boolean startWaiting(boolean counted)
+	{
+		if (!counted)
+		{
+			waiting.incrementAndGet();
+			delayed.increment();
+		}
+		return true;
+	}
+
+	public void release()
+	{
+		inFlight.decrementAndGet();
+		if (inFlightPermits != null)
+		{
+			inFlightPermits.release();
+		}
+	}
+
+	@Override
+	public String getUrl()
+	{
+		return url;
+	}
+
+	@Override
+	public int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	@Override
+	public int getInFlight()
+	{
+		return inFlight.get();
+	}
+
+	@Override
+	public int getWaiting()
+	{
+		return waiting.get();
+	}
+
+	@Override
+	public long getAdmitted()
+	{
+		return admitted.sum();
+	}
+
+	@Override
+	public long getDelayed()
+	{
+		return delayed.sum();
+	}
+
+	@Override
+	public double getWaitTimeMillis()
+	{
+		return waitNanos.sum() / 1000000d;
+	}
+
+	/**
+	 * Token bucket holding at most one second worth of tokens. Only used
+	 * while holding the rate lock.
+	 */
+	private static class TokenBucket
+	{
+		private final double perNano;
+		private final double capacity;
+		private double tokens;
+		private long refilledAt = System.nanoTime();
+
+		TokenBucket(long perSecond)
+		{
+			this.perNano = perSecond / 1e9;
+			this.capacity = perSecond;
+			this.tokens = perSecond;
+		}
+
+		/**
+		 * Takes tokens, overdrawing the bucket if need be.
+		 *
+		 * @return the nanoseconds to wait before the tokens are covered
+		 */
+		long reserve(long amount)
+		{
+			long now = System.nanoTime();
+			if (now > refilledAt)
+			{
+				tokens = Math.min(capacity, tokens + (now - refilledAt) * perNano);
+				refilledAt = now;
+			}
+			if (amount > capacity && tokens < capacity)
+			{
+				// Too large to be covered at once: wait for a full bucket, then overdraw it
+				long wait = (long) ((capacity - tokens) / perNano);
+				tokens = capacity - amount;
+				refilledAt = now + wait;
+				return wait;
+			}
+			tokens -= amount;
+			return tokens >= 0 ? 0 : (long) (-tokens / perNano);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+/**
+ * AdmissionControllerMXBean.
+ *
+ * The state of the admission control of one Solr url, as exposed over JMX
+ * under org.si4t.solr:type=AdmissionControl,url="...".
+ *
+ * @author agent
+ */
+public interface AdmissionControllerMXBean
+{
+	String getUrl();
+
+	/**
+	 * @return the maximum update requests in flight, 0 if unlimited
+	 */
+	int getMaxInFlight();
+
+	int getInFlight();
+
+	/**
+	 * @return the callers currently waiting to be admitted
+	 */
+	int getWaiting();
+
+	long getAdmitted();
+
+	/**
+	 * @return the requests which had to wait before being admitted
+	 */
+	long getDelayed();
+
+	/**
+	 * @return the total time requests waited to be admitted
+	 */
+	double getWaitTimeMillis();
+}
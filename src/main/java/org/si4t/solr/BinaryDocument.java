@@ -0,0 +1,119 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.BinaryIndexData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BinaryDocument.
+ *
+ * The parts of a binary which are sent to the Solr extract handler. Unlike
+ * BinaryIndexData it can be written to and read from the index journal.
+ *
+ * @author agent
+ */
+public class BinaryDocument
+{
+	private String id;
+	private String publicationId;
+	private String url;
+	private String fileName;
+	private String fileSize;
+	private String fileType;
+	private byte[] content;
+
+	public BinaryDocument(String id, String publicationId, String url, String fileName, String fileSize, String fileType, byte[] content)
+	{
+		this.id = id;
+		this.publicationId = publicationId;
+		this.url = url;
+		this.fileName = fileName;
+		this.fileSize = fileSize;
+		this.fileType = fileType;
+		this.content = content;
+	}
+
+	public static BinaryDocument from(BinaryIndexData data)
+	{
+		byte[] content = data.getContent() != null ? data.getContent().getContent() : null;
+		return new BinaryDocument(data.getUniqueIndexId(), data.getPublicationItemId(), data.getIndexUrl(), data.getFileName(),
+				data.getFileSize(), data.getFileType(), content);
+	}
+
+	public static BinaryDocument fromMap(Map<String, Object> map)
+	{
+		return new BinaryDocument((String) map.get("id"), (String) map.get("publicationId"), (String) map.get("url"),
+				(String) map.get("fileName"), (String) map.get("fileSize"), (String) map.get("fileType"), (byte[]) map.get("content"));
+	}
+
+	public Map<String, Object> toMap()
+	{
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("id", id);
+		map.put("publicationId", publicationId);
+		map.put("url", url);
+		map.put("fileName", fileName);
+		map.put("fileSize", fileSize);
+		map.put("fileType", fileType);
+		map.put("content", content);
+		return map;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public String getPublicationId()
+	{
+		return publicationId;
+	}
+
+	public String getUrl()
+	{
+		return url;
+	}
+
+	public String getFileName()
+	{
+		return fileName;
+	}
+
+	public String getFileSize()
+	{
+		return fileSize;
+	}
+
+	public String getFileType()
+	{
+		return fileType;
+	}
+
+	public byte[] getContent()
+	{
+		return content;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BinaryDocument [id=" + id + ", url=" + url + ", size=" + (content != null ? content.length : 0) + "]";
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.Utils;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.tika.Tika;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BinaryExtractor.
+ *
+ * Extracts the text of binaries with Tika inside the deployer, instead of
+ * Solr's extract handler, and turns them into regular Solr documents with
+ * the same fields the extract request would set. The documents can then be
+ * sent in batches along with the other documents.
+ *
+ * Binaries are extracted on a bounded pool of threads. A binary larger than
+ * the maximum file size, which Tika fails to parse, or whose extraction takes
+ * longer than the timeout, is indexed without its text, as retrying it would
+ * fail the same way. Tika does not always respond to interrupts, so a timed
+ * out extraction may keep its thread busy until it finishes.
+ *
+ * @author agent
+ */
+public class BinaryExtractor
+{
+	private static final Logger LOG = LoggerFactory.getLogger(BinaryExtractor.class);
+	private static final String CONTENT_FIELD = "binary_content";
+
+	private final Tika tika = new Tika();
+	private final ExecutorService executor;
+	private final long timeout;
+	private final long maxFileSize;
+	private final int maxTextLength;
+
+	/**
+	 * @param threads the amount of binaries extracted at a time
+	 * @param timeout the maximum milliseconds the extraction of one binary may take
+	 * @param maxFileSize the maximum size in bytes of a binary to extract, 0 or less for unlimited
+	 * @param maxTextLength the maximum characters of text kept per binary, 0 or less for unlimited
+	 */
+	public BinaryExtractor(int threads, long timeout, long maxFileSize, int maxTextLength)
+	{
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r ->
+		{
+			Thread t = new Thread(r, "si4t-solr-extractor-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.timeout = timeout;
+		this.maxFileSize = maxFileSize;
+		this.maxTextLength = maxTextLength > 0 ? maxTextLength : -1;
+	}
+
+	/**
+	 * Starts extracting all binaries right away. The documents are handed out
+	 * in order while iterating, each as soon as its extraction finished. A
+	 * binary without content surfaces as an UnindexableContentException while
+	 * iterating, an interrupted extraction as an UncheckedIOException.
+	 * Every binary is extracted once, however often and by however many
+	 * threads the documents are iterated.
+	 *
+	 * @param binaries the binaries to extract, by key
+	 * @param solrUrl the url the documents are sent to, which the extraction time is recorded for
+	 */
+	public Iterable<SolrInputDocument> extract(Map<String, BinaryDocument> binaries, String solrUrl)
+	{
+		IndexingMetrics metrics = IndexingMetrics.of(solrUrl);
+		List<Extraction> extractions = new ArrayList<>(binaries.size());
+		for (BinaryDocument binary : binaries.values())
+		{
+			Extraction extraction = new Extraction(binary, metrics);
+			extraction.future = this.executor.submit(extraction);
+			extractions.add(extraction);
+		}
+		return () -> new Iterator<SolrInputDocument>()
+		{
+			private final Iterator<Extraction> iterator = extractions.iterator();
+
+			@Override
+			public boolean hasNext()
+			{
+				return iterator.hasNext();
+			}
+
+			@Override
+			public SolrInputDocument next()
+			{
+				return iterator.next().await();
+			}
+		};
+	}
+
+	public void shutdown()
+	{
+		this.executor.shutdownNow();
+	}
+
+	private class Extraction implements Callable<SolrInputDocument>
+	{
+		private final BinaryDocument binary;
+		private final IndexingMetrics metrics;
+		private volatile long startedAt = 0;
+		private volatile boolean timedOut = false;
+		private boolean failed = false;
+		private Future<SolrInputDocument> future;
+
+		private Extraction(BinaryDocument binary, IndexingMetrics metrics)
+		{
+			this.binary = binary;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public SolrInputDocument call() throws IOException, TikaException
+		{
+			this.startedAt = System.nanoTime();
+			SolrInputDocument document = toDocument(binary);
+			byte[] content = binary.getContent();
+			if (content == null)
+			{
+				throw new UnindexableContentException("Binary with Id " + binary.getId() + " has no content.");
+			}
+			if (maxFileSize > 0 && content.length > maxFileSize)
+			{
+				LOG.warn("Binary with Id " + binary.getId() + " has " + content.length + " bytes, more than " +
+						maxFileSize + ". Indexing it without its text");
+				return document;
+			}
+
+			Metadata metadata = new Metadata();
+			if (!Utils.StringIsNullOrEmpty(binary.getFileName()))
+			{
+				metadata.set(Metadata.RESOURCE_NAME_KEY, binary.getFileName());
+			}
+			try (InputStream stream = new ByteArrayInputStream(content))
+			{
+				document.setField(CONTENT_FIELD, tika.parseToString(stream, metadata, maxTextLength));
+			}
+			if (Utils.StringIsNullOrEmpty(binary.getFileType()) && metadata.get(Metadata.CONTENT_TYPE) != null)
+			{
+				document.setField("fileType", metadata.get(Metadata.CONTENT_TYPE));
+			}
+			metrics.record(IndexingMetrics.Operation.EXTRACT, 1, System.nanoTime() - this.startedAt);
+			return document;
+		}
+
+		/**
+		 * Waits for the extraction, for at most the timeout from the moment it started.
+		 */
+		private SolrInputDocument await()
+		{
+			try
+			{
+				while (true)
+				{
+					long started = this.startedAt;
+					long remaining = started == 0 ? TimeUnit.MILLISECONDS.toNanos(timeout) :
+							started + TimeUnit.MILLISECONDS.toNanos(timeout) - System.nanoTime();
+					try
+					{
+						return this.future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+					}
+					catch (TimeoutException e)
+					{
+						if (started != 0)
+						{
+							return this.timeOut();
+						}
+						// Still waiting for a thread, the timeout has not started yet
+					}
+				}
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof UnindexableContentException)
+				{
+					metrics.recordError(IndexingMetrics.Operation.EXTRACT);
+					throw (UnindexableContentException) e.getCause();
+				}
+				return this.fail(e.getCause());
+			}
+			catch (CancellationException e)
+			{
+				if (this.timedOut)
+				{
+					// Timed out while another thread was waiting for it as well
+					return toDocument(binary);
+				}
+				InterruptedIOException cancelled = new InterruptedIOException("Extracting binary with Id " +
+						binary.getId() + " was cancelled");
+				cancelled.initCause(e);
+				throw new UncheckedIOException(cancelled);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				InterruptedIOException interrupted = new InterruptedIOException(
+						"Interrupted while extracting binary with Id " + binary.getId());
+				interrupted.initCause(e);
+				throw new UncheckedIOException(interrupted);
+			}
+		}
+
+		private synchronized SolrInputDocument timeOut()
+		{
+			if (!this.timedOut)
+			{
+				this.timedOut = true;
+				this.future.cancel(true);
+				metrics.recordError(IndexingMetrics.Operation.EXTRACT);
+				LOG.warn("Extracting binary with Id " + binary.getId() + " took longer than " + timeout +
+						"ms. Indexing it without its text");
+			}
+			return toDocument(binary);
+		}
+
+		/**
+		 * Indexes the binary without its text rather than failing the whole transaction.
+		 */
+		private synchronized SolrInputDocument fail(Throwable cause)
+		{
+			if (!this.failed)
+			{
+				this.failed = true;
+				metrics.recordError(IndexingMetrics.Operation.EXTRACT);
+				LOG.warn("Extracting binary with Id " + binary.getId() + " failed: " + cause.getMessage() +
+						". Indexing it without its text", cause);
+			}
+			return toDocument(binary);
+		}
+	}
+
+	/**
+	 * @return the document with the fields the extract request sets as literals
+	 */
+	private static SolrInputDocument toDocument(BinaryDocument binary)
+	{
+		SolrInputDocument document = new SolrInputDocument();
+		document.setField("id", binary.getId());
+		document.setField("publicationid", binary.getPublicationId());
+		document.setField("pubdate", "NOW");
+		document.setField("url", binary.getUrl().replace(" ", "%20"));
+		if (!Utils.StringIsNullOrEmpty(binary.getFileSize()))
+		{
+			document.setField("fileSize", binary.getFileSize());
+		}
+		if (!Utils.StringIsNullOrEmpty(binary.getFileType()))
+		{
+			document.setField("fileType", binary.getFileType());
+		}
+		return document;
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * BulkReindex.
+ *
+ * Bulk reindexing of SolrCloud aliases. While an alias is being reindexed,
+ * everything indexed into it goes into a staging collection instead, which
+ * is not committed until the reindex is finished. Finishing commits the
+ * staging collection once, optionally optimizes it, and then atomically
+ * points the alias to it, so queries switch from the old index to the
+ * complete new one at once.
+ *
+ * Transactions hold the read lock while they are sent, finishing takes the
+ * write lock, so no transaction is half sent to the staging collection when
+ * the alias is swapped.
+ *
+ * @author agent
+ */
+public class BulkReindex implements BulkReindexMXBean
+{
+	private static final Logger LOG = LoggerFactory.getLogger(BulkReindex.class);
+
+	private final ConcurrentHashMap<String, String> stagingCollections = new ConcurrentHashMap<>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+	private final Function<String, SolrClientRequest> clientRequests;
+	private final Consumer<String> forget;
+
+	/**
+	 * @param clientRequests creates the client request of a collection
+	 * @param forget forgets what is known about the content of an alias, called
+	 *               when its reindex starts or is aborted
+	 */
+	public BulkReindex(Function<String, SolrClientRequest> clientRequests, Consumer<String> forget)
+	{
+		this.clientRequests = clientRequests;
+		this.forget = forget;
+	}
+
+	/**
+	 * @param url the collection or alias a transaction is meant for
+	 * @return the staging collection if the alias is being reindexed, otherwise the url itself
+	 */
+	public String resolve(String url)
+	{
+		String staging = stagingCollections.get(url);
+		return staging != null ? staging : url;
+	}
+
+	/**
+	 * @return true if the url is the staging collection of a reindex
+	 */
+	public boolean isStaging(String url)
+	{
+		return stagingCollections.containsValue(url);
+	}
+
+	public ReentrantReadWriteLock.ReadLock transactionLock()
+	{
+		return lock.readLock();
+	}
+
+	@Override
+	public void start(String alias, String stagingCollection)
+	{
+		if (alias == null || alias.trim().isEmpty() || stagingCollection == null || stagingCollection.trim().isEmpty())
+		{
+			throw new IllegalArgumentException("Both an alias and a staging collection are required");
+		}
+		alias = alias.trim();
+		stagingCollection = stagingCollection.trim();
+		if (alias.equals(stagingCollection))
+		{
+			throw new IllegalArgumentException("The staging collection must differ from the alias " + alias);
+		}
+		lock.writeLock().lock();
+		try
+		{
+			String current = stagingCollections.putIfAbsent(alias, stagingCollection);
+			if (current != null)
+			{
+				throw new IllegalStateException("Alias " + alias + " is already being reindexed into " + current);
+			}
+			// The staging collection starts empty, so nothing sent to the alias before may be skipped
+			forget.accept(alias);
+			LOG.info("Bulk reindexing alias " + alias + " into staging collection " + stagingCollection);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void finish(String alias, boolean optimize)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			String staging = stagingCollections.get(alias);
+			if (staging == null)
+			{
+				throw new IllegalStateException("Alias " + alias + " is not being reindexed");
+			}
+
+			SolrClientRequest clientRequest = clientRequests.apply(staging);
+			clientRequest.setCommitStrategy(CommitStrategy.HARD);
+			clientRequest.setOptimize(optimize);
+			LOG.info("Finishing bulk reindex of alias " + alias + ": committing staging collection " + staging);
+			LOG.info(SolrIndexDispatcher.INSTANCE.commit(clientRequest));
+			LOG.info(SolrIndexDispatcher.INSTANCE.createAlias(alias, clientRequest));
+
+			stagingCollections.remove(alias);
+		}
+		catch (SolrServerException | IOException e)
+		{
+			// The reindex stays in progress, so finishing can be tried again
+			LOG.error("Finishing bulk reindex of alias " + alias + " failed: " + e.getMessage(), e);
+			throw new IllegalStateException("Finishing bulk reindex of alias " + alias + " failed: " + e.getMessage());
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void abort(String alias)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			String staging = stagingCollections.remove(alias);
+			if (staging == null)
+			{
+				throw new IllegalStateException("Alias " + alias + " is not being reindexed");
+			}
+			forget.accept(alias);
+			LOG.warn("Aborted bulk reindex of alias " + alias + ", staging collection " + staging + " is left as is");
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public Map<String, String> getStagingCollections()
+	{
+		return Collections.unmodifiableMap(new LinkedHashMap<>(stagingCollections));
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import java.util.Map;
+
+/**
+ * BulkReindexMXBean.
+ *
+ * Controls bulk reindexing of SolrCloud aliases, as exposed over JMX under
+ * org.si4t.solr:type=BulkReindex,url="...".
+ *
+ * @author agent
+ */
+public interface BulkReindexMXBean
+{
+	/**
+	 * Starts a bulk reindex: from now on everything indexed into the alias
+	 * is written into the staging collection, without commits.
+	 *
+	 * @param alias the alias the indexer is configured with
+	 * @param stagingCollection the existing, empty collection to build the new index in
+	 */
+	void start(String alias, String stagingCollection);
+
+	/**
+	 * Finishes a bulk reindex: commits the staging collection, optimizes it
+	 * if asked for, and points the alias to it.
+	 *
+	 * @param alias the alias being reindexed
+	 * @param optimize true to optimize the staging collection before the swap
+	 */
+	void finish(String alias, boolean optimize);
+
+	/**
+	 * Abandons a bulk reindex. The alias is left as is, and indexing goes to
+	 * it again. The staging collection is left as is too.
+	 *
+	 * @param alias the alias being reindexed
+	 */
+	void abort(String alias);
+
+	/**
+	 * @return the staging collections of the aliases being reindexed, by alias
+	 */
+	Map<String, String> getStagingCollections();
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * CircuitBreaker.
+ *
+ * Tracks the health of one Solr url. After a number of consecutive transient
+ * failures the circuit opens and requests fail fast. Once the open time has
+ * passed a single probe request is let through: if it succeeds the circuit
+ * closes again, otherwise it stays open for another period. A probe whose
+ * outcome is not recorded within the open time counts as failed, so a lost
+ * probe cannot keep the circuit half open.
+ *
+ * A threshold of 0 or less disables the breaker.
+ *
+ * @author agent
+ */
+public class CircuitBreaker
+{
+	private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	public enum State
+	{
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	private final String url;
+	private final int threshold;
+	private final long openTime;
+	private final LongSupplier clock;
+
+	private State state = State.CLOSED;
+	private int failures = 0;
+	private long openedAt = 0;
+	private long probedAt = 0;
+
+	public CircuitBreaker(String url, int threshold, long openTime)
+	{
+		this(url, threshold, openTime, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param clock the current time in milliseconds
+	 */
+	public CircuitBreaker(String url, int threshold, long openTime, LongSupplier clock)
+	{
+		this.url = url;
+		this.threshold = threshold;
+		this.openTime = openTime;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return true if a request may be sent, false if it should fail fast
+	 */
+	public synchronized boolean allowRequest()
+	{
+		if (threshold <= 0)
+		{
+			return true;
+		}
+		switch (state)
+		{
+			case OPEN:
+				if (clock.getAsLong() - openedAt >= openTime)
+				{
+					LOG.info("Circuit for " + url + " is half open, letting a probe request through");
+					state = State.HALF_OPEN;
+					probedAt = clock.getAsLong();
+					return true;
+				}
+				return false;
+			case HALF_OPEN:
+				// Only the probe request is let through, until its outcome is overdue
+				if (clock.getAsLong() - probedAt >= openTime)
+				{
+					LOG.warn("Probe request for " + url + " did not finish within " + openTime + "ms, circuit is open again");
+					state = State.OPEN;
+					openedAt = clock.getAsLong();
+				}
+				return false;
+			case CLOSED:
+			default:
+				return true;
+		}
+	}
+
+	public synchronized void recordSuccess()
+	{
+		if (state != State.CLOSED)
+		{
+			LOG.info("Circuit for " + url + " is closed again");
+		}
+		state = State.CLOSED;
+		failures = 0;
+	}
+
+	public synchronized void recordFailure()
+	{
+		if (threshold <= 0)
+		{
+			return;
+		}
+		failures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold))
+		{
+			LOG.warn("Circuit for " + url + " opened after " + failures + " consecutive failures, failing fast for " + openTime + "ms");
+			state = State.OPEN;
+			openedAt = clock.getAsLong();
+		}
+	}
+
+	public synchronized State getState()
+	{
+		return state;
+	}
+
+	public String getUrl()
+	{
+		return url;
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.SolrServerException;
+
+/**
+ * CircuitOpenException.
+ *
+ * Thrown instead of sending a request while the circuit of the Solr url is
+ * open. The url is expected to recover, so the request is worth sending again
+ * later.
+ *
+ * @author agent
+ */
+public class CircuitOpenException extends SolrServerException
+{
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String message)
+	{
+		super(message);
+	}
+}
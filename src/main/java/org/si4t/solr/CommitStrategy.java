@@ -0,0 +1,53 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+/**
+ * CommitStrategy.
+ * 
+ * Determines how changes sent during a transaction are made visible in Solr.
+ * 
+ * HARD: one hard commit at the end of the transaction.
+ * SOFT: one soft commit at the end of the transaction.
+ * COMMIT_WITHIN: updates carry a commitWithin, Solr commits by itself.
+ * NONE: no commits are sent, Solr's autoCommit settings take care of it.
+ * 
+ * @author agent
+ */
+public enum CommitStrategy
+{
+	HARD,
+	SOFT,
+	COMMIT_WITHIN,
+	NONE;
+
+	public static CommitStrategy fromString(String value)
+	{
+		if (value == null)
+		{
+			return null;
+		}
+		for (CommitStrategy strategy : values())
+		{
+			if (strategy.name().replace("_", "").equalsIgnoreCase(value.trim().replace("_", "")))
+			{
+				return strategy;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DigestStore.
+ *
+ * Remembers a digest of what was last sent to Solr for each document. The
+ * store is bounded: when it is full the least recently used entries are
+ * dropped, which only means those documents are sent in full again.
+ *
+ * Entries are keyed by Solr url and unique index id, and are saved to a file
+ * so they survive a restart of the deployer. If the index is emptied or
+ * rebuilt outside of the deployer the file must be deleted as well.
+ *
+ * @param <V> the digest kept per document
+ * @author agent
+ */
+public abstract class DigestStore<V>
+{
+	private static final Logger LOG = LoggerFactory.getLogger(DigestStore.class);
+	private static final int FILE_VERSION = 1;
+
+	private final File file;
+	private final String what;
+	private final long saveInterval;
+	private final LinkedHashMap<String, V> entries;
+	private boolean dirty = false;
+	private long lastSaved = System.currentTimeMillis();
+
+	/**
+	 * @param what what the store holds, for logging purposes
+	 */
+	protected DigestStore(File file, String what, final int maxEntries, long saveInterval) throws IOException
+	{
+		this.file = file;
+		this.what = what;
+		this.saveInterval = saveInterval;
+		this.entries = new LinkedHashMap<String, V>(1024, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+		this.load();
+	}
+
+	public static String key(String solrUrl, String id)
+	{
+		return solrUrl + "|" + id;
+	}
+
+	protected abstract void write(DataOutputStream out, V value) throws IOException;
+
+	protected abstract V read(DataInputStream in) throws IOException;
+
+	/**
+	 * @return the digest last sent for the key, or null if unknown
+	 */
+	public synchronized V get(String key)
+	{
+		return entries.get(key);
+	}
+
+	public synchronized void putAll(Map<String, V> entries)
+	{
+		if (!entries.isEmpty())
+		{
+			this.entries.putAll(entries);
+			dirty = true;
+		}
+	}
+
+	public synchronized void remove(String key)
+	{
+		if (entries.remove(key) != null)
+		{
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Forgets everything sent to a Solr url.
+	 */
+	public synchronized void removeUrl(String solrUrl)
+	{
+		String prefix = key(solrUrl, "");
+		if (entries.keySet().removeIf(key -> key.startsWith(prefix)))
+		{
+			dirty = true;
+		}
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Saves the store if it changed and the save interval has passed.
+	 */
+	public void saveIfDue()
+	{
+		if (System.currentTimeMillis() - lastSaved >= saveInterval)
+		{
+			this.save();
+		}
+	}
+
+	public void save()
+	{
+		List<Map.Entry<String, V>> snapshot;
+		synchronized (this)
+		{
+			if (!dirty)
+			{
+				return;
+			}
+			snapshot = new ArrayList<>(entries.size());
+			for (Map.Entry<String, V> entry : entries.entrySet())
+			{
+				snapshot.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+			}
+			dirty = false;
+			lastSaved = System.currentTimeMillis();
+		}
+
+		File temp = new File(file.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024)))
+		{
+			out.writeInt(FILE_VERSION);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, V> entry : snapshot)
+			{
+				out.writeUTF(entry.getKey());
+				this.write(out, entry.getValue());
+			}
+		}
+		catch (IOException e)
+		{
+			LOG.error("Could not save " + what + " to " + file.getAbsolutePath(), e);
+			synchronized (this)
+			{
+				dirty = true;
+			}
+			return;
+		}
+
+		try
+		{
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOG.debug("Saved " + what + " of " + snapshot.size() + " documents to " + file.getAbsolutePath());
+		}
+		catch (IOException e)
+		{
+			LOG.error("Could not save " + what + " to " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private void load() throws IOException
+	{
+		if (!file.isFile())
+		{
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+			{
+				throw new IOException("Could not create directory " + parent.getAbsolutePath());
+			}
+			LOG.info("Starting without " + what + " at " + file.getAbsolutePath());
+			return;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024)))
+		{
+			int version = in.readInt();
+			if (version != FILE_VERSION)
+			{
+				LOG.warn("Ignoring " + what + " file " + file.getAbsolutePath() + " of unknown version " + version);
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++)
+			{
+				String key = in.readUTF();
+				entries.put(key, this.read(in));
+			}
+		}
+		catch (EOFException e)
+		{
+			LOG.warn("The " + what + " file " + file.getAbsolutePath() + " is truncated, using the " + entries.size() +
+					" documents read");
+		}
+		LOG.info("Loaded " + what + " of " + entries.size() + " documents from " + file.getAbsolutePath());
+	}
+
+	static void update(MessageDigest digest, String value)
+	{
+		if (value != null)
+		{
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * Hashes the values of an index field, with their types.
+	 */
+	static void update(MessageDigest digest, Iterable<?> values)
+	{
+		for (Object value : values)
+		{
+			update(digest, value == null ? "null" : value.getClass().getName());
+			update(digest, String.valueOf(value));
+		}
+	}
+
+	static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	static long toLong(byte[] hash)
+	{
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+		{
+			value = (value << 8) | (hash[i] & 0xff);
+		}
+		return value;
+	}
+}
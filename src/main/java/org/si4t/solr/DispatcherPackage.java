@@ -30,6 +30,7 @@ public class DispatcherPackage
 	private DispatcherAction action;
 	private SolrClientRequest request;
 	private ArrayList<SolrInputDocument> documents;
+	private long requestTime;
 
 	public DispatcherPackage(DispatcherAction action, SolrClientRequest request, ArrayList<SolrInputDocument> documents)
 	{
@@ -68,4 +69,18 @@ public class DispatcherPackage
 	{
 		this.documents = documents;
 	}
+
+	/**
+	 * @return the time in milliseconds the request which added the documents
+	 * took, without waiting to be admitted or to retry
+	 */
+	public long getRequestTime()
+	{
+		return requestTime;
+	}
+
+	public void setRequestTime(long requestTime)
+	{
+		this.requestTime = requestTime;
+	}
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+
+import java.util.ArrayList;
+
+/**
+ * DocumentBatcher.
+ *
+ * Groups Solr input documents into batches which are each sent to Solr
+ * as a single update request. A batch is closed when it either reaches
+ * the maximum amount of documents, or when adding the next document
+ * would make the estimated payload exceed the maximum amount of bytes.
+ *
+ * A maximum of 0 or less for the byte size disables size based batching.
+ *
+ * Completed batches are handed back as soon as they are full, so they can be
+ * dispatched while the remaining documents are still being constructed.
+ * The limits may be changed in between, they apply from the next document on.
+ *
+ * @author agent
+ */
+public class DocumentBatcher
+{
+	private int maxDocuments;
+	private long maxBytes;
+
+	private ArrayList<SolrInputDocument> current = null;
+	private long currentBytes = 0;
+
+	public DocumentBatcher(int maxDocuments, long maxBytes)
+	{
+		this.setLimits(maxDocuments, maxBytes);
+	}
+
+	public void setLimits(int maxDocuments, long maxBytes)
+	{
+		this.maxDocuments = Math.max(1, maxDocuments);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Adds a document to the current batch.
+	 *
+	 * @param document the document
+	 * @return the previous batch if adding this document closed it, otherwise null
+	 */
+	public ArrayList<SolrInputDocument> add(SolrInputDocument document)
+	{
+		long size = estimateSize(document);
+		ArrayList<SolrInputDocument> completed = null;
+
+		if (current != null && (current.size() >= maxDocuments || (maxBytes > 0 && !current.isEmpty() && currentBytes + size > maxBytes)))
+		{
+			completed = current;
+			current = null;
+		}
+		if (current == null)
+		{
+			current = new ArrayList<>(Math.min(maxDocuments, 1024));
+			currentBytes = 0;
+		}
+		current.add(document);
+		currentBytes += size;
+		return completed;
+	}
+
+	/**
+	 * @return the last, possibly partial batch, or null if there is none
+	 */
+	public ArrayList<SolrInputDocument> flush()
+	{
+		ArrayList<SolrInputDocument> completed = current;
+		current = null;
+		currentBytes = 0;
+		return completed;
+	}
+
+	public boolean hasDocuments()
+	{
+		return current != null && !current.isEmpty();
+	}
+
+	public int getMaxDocuments()
+	{
+		return maxDocuments;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Rough estimate of the serialized size of a document: the lengths of all
+	 * field names and the string representation of their values.
+	 *
+	 * @param document the document
+	 * @return estimated size in bytes
+	 */
+	public static long estimateSize(SolrInputDocument document)
+	{
+		if (document == null)
+		{
+			return 0;
+		}
+		long size = 0;
+		for (SolrInputField field : document)
+		{
+			for (Object value : field)
+			{
+				size += field.getName().length();
+				if (value instanceof byte[])
+				{
+					size += ((byte[]) value).length;
+				}
+				else if (value != null)
+				{
+					size += String.valueOf(value).length();
+				}
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * FanOutTarget.
+ *
+ * An additional Solr url every transaction of a url is sent to as well,
+ * e.g. a disaster recovery index. A failure of a required target fails the
+ * commit. A failure of a best effort target does not: the transaction is
+ * kept in the backlog of the target and resent later. While a backlog
+ * exists, new transactions join it, so the target receives them in order.
+ *
+ * The backlog is held in memory and bounded; when it is full the oldest
+ * transaction is dropped, and what is known about the content of the target
+ * is forgotten, so nothing is skipped as unchanged when it is republished.
+ *
+ * @author agent
+ */
+public class FanOutTarget
+{
+	private static final Logger LOG = LoggerFactory.getLogger(FanOutTarget.class);
+
+	public enum Policy
+	{
+		REQUIRED,
+		BEST_EFFORT;
+
+		/**
+		 * @return the policy, or null if the value is not a known policy
+		 */
+		public static Policy fromString(String value)
+		{
+			if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("bestEffort"))
+			{
+				return BEST_EFFORT;
+			}
+			if (value.trim().equalsIgnoreCase("required"))
+			{
+				return REQUIRED;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Sends a transaction to the url of a target.
+	 */
+	@FunctionalInterface
+	public interface Sender
+	{
+		void send(JournalEntry entry, String url) throws Exception;
+	}
+
+	private final String url;
+	private final Policy policy;
+	private final int maxBacklog;
+	private final Consumer<String> forget;
+	private final ArrayDeque<JournalEntry> backlog = new ArrayDeque<>();
+
+	/**
+	 * @param forget forgets what is known about the content of the url, called
+	 *               when a transaction is dropped from the backlog
+	 */
+	public FanOutTarget(String url, Policy policy, int maxBacklog, Consumer<String> forget)
+	{
+		this.url = url;
+		this.policy = policy;
+		this.maxBacklog = Math.max(1, maxBacklog);
+		this.forget = forget;
+	}
+
+	public String getUrl()
+	{
+		return url;
+	}
+
+	public boolean isRequired()
+	{
+		return policy == Policy.REQUIRED;
+	}
+
+	public synchronized boolean hasBacklog()
+	{
+		return !backlog.isEmpty();
+	}
+
+	public synchronized int getBacklog()
+	{
+		return backlog.size();
+	}
+
+	/**
+	 * Adds a transaction which could not be sent to the backlog.
+	 */
+	public synchronized void enqueue(JournalEntry entry)
+	{
+		if (backlog.size() >= maxBacklog)
+		{
+			JournalEntry dropped = backlog.pollFirst();
+			LOG.error("Backlog of " + url + " is full, dropped a transaction of publication ID " +
+					dropped.getPublicationId() + ". The index at " + url + " needs to be republished");
+			forget.accept(url);
+		}
+		backlog.addLast(entry);
+		LOG.warn(backlog.size() + " transaction(s) for " + url + " wait to be resent");
+	}
+
+	/**
+	 * Resends the backlog in order, until it is empty or sending fails.
+	 */
+	public void resend(Sender sender)
+	{
+		while (true)
+		{
+			JournalEntry entry;
+			synchronized (this)
+			{
+				entry = backlog.peekFirst();
+			}
+			if (entry == null)
+			{
+				return;
+			}
+			try
+			{
+				sender.send(entry, url);
+			}
+			catch (Exception e)
+			{
+				LOG.warn("Resending a transaction of publication ID " + entry.getPublicationId() + " to " + url +
+						" failed, retrying later: " + e.getMessage());
+				return;
+			}
+			synchronized (this)
+			{
+				// Only the resender removes entries, unless the backlog overflowed meanwhile
+				if (backlog.peekFirst() == entry)
+				{
+					backlog.pollFirst();
+				}
+			}
+			LOG.info("Resent a transaction of publication ID " + entry.getPublicationId() + " to " + url);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FanOutTarget [url=" + url + ", policy=" + policy + "]";
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.SearchIndexData;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FieldDigestStore.
+ *
+ * Remembers a digest per field of the documents last sent to Solr, so an
+ * update can be sent as an atomic update of just the fields which changed.
+ * A document without digests is simply sent in full.
+ *
+ * @author agent
+ */
+public class FieldDigestStore extends DigestStore<Map<String, Long>>
+{
+	public FieldDigestStore(File file, int maxEntries, long saveInterval) throws IOException
+	{
+		super(file, "field digests", maxEntries, saveInterval);
+	}
+
+	@Override
+	protected void write(DataOutputStream out, Map<String, Long> fields) throws IOException
+	{
+		out.writeInt(fields.size());
+		for (Map.Entry<String, Long> field : fields.entrySet())
+		{
+			out.writeUTF(field.getKey());
+			out.writeLong(field.getValue());
+		}
+	}
+
+	@Override
+	protected Map<String, Long> read(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		Map<String, Long> fields = new HashMap<>(count * 2);
+		for (int i = 0; i < count; i++)
+		{
+			fields.put(in.readUTF(), in.readLong());
+		}
+		return fields;
+	}
+
+	/**
+	 * Works out which fields differ between two sets of digests. Fields which
+	 * are no longer present are included, so they are cleared in Solr.
+	 *
+	 * @return the names of the changed fields, empty if nothing changed
+	 */
+	public static Set<String> changedFields(Map<String, Long> previous, Map<String, Long> current)
+	{
+		Set<String> changed = new LinkedHashSet<>();
+		for (Map.Entry<String, Long> field : current.entrySet())
+		{
+			if (!field.getValue().equals(previous.get(field.getKey())))
+			{
+				changed.add(field.getKey());
+			}
+		}
+		for (String field : previous.keySet())
+		{
+			if (!current.containsKey(field))
+			{
+				changed.add(field);
+			}
+		}
+		return changed;
+	}
+
+	public static Map<String, Long> digestFields(SearchIndexData data)
+	{
+		Map<String, Long> fields = new HashMap<>(data.getIndexFields().size() * 2);
+		for (Map.Entry<String, ArrayList<Object>> field : data.getIndexFields().entrySet())
+		{
+			MessageDigest digest = newDigest();
+			update(digest, field.getValue());
+			fields.put(field.getKey(), toLong(digest.digest()));
+		}
+		return fields;
+	}
+}
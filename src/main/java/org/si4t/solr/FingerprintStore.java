@@ -0,0 +1,103 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.SearchIndexData;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * FingerprintStore.
+ *
+ * Remembers a hash of the content last sent to Solr for each document, so a
+ * republish of unchanged content can be skipped.
+ *
+ * @author agent
+ */
+public class FingerprintStore extends DigestStore<Long>
+{
+	public FingerprintStore(File file, int maxEntries, long saveInterval) throws IOException
+	{
+		super(file, "fingerprints", maxEntries, saveInterval);
+	}
+
+	public boolean isUnchanged(String key, long fingerprint)
+	{
+		Long previous = this.get(key);
+		return previous != null && previous == fingerprint;
+	}
+
+	@Override
+	protected void write(DataOutputStream out, Long fingerprint) throws IOException
+	{
+		out.writeLong(fingerprint);
+	}
+
+	@Override
+	protected Long read(DataInputStream in) throws IOException
+	{
+		return in.readLong();
+	}
+
+	/**
+	 * Stable hash over the index fields of an item. Fields are hashed in name
+	 * order, because the order of the field map is not stable.
+	 */
+	public static long fingerprint(SearchIndexData data)
+	{
+		MessageDigest digest = newDigest();
+		update(digest, data.getUniqueIndexId());
+		List<String> fieldNames = new ArrayList<>(data.getIndexFields().keySet());
+		Collections.sort(fieldNames);
+		for (String fieldName : fieldNames)
+		{
+			update(digest, fieldName);
+			List<Object> values = data.getIndexFields().get(fieldName);
+			if (values != null)
+			{
+				update(digest, values);
+			}
+		}
+		return toLong(digest.digest());
+	}
+
+	/**
+	 * Hash over the content and the literal fields of a binary.
+	 */
+	public static long fingerprint(BinaryDocument document)
+	{
+		MessageDigest digest = newDigest();
+		update(digest, document.getId());
+		update(digest, document.getPublicationId());
+		update(digest, document.getUrl());
+		update(digest, document.getFileName());
+		update(digest, document.getFileSize());
+		update(digest, document.getFileType());
+		if (document.getContent() != null)
+		{
+			digest.update(document.getContent());
+		}
+		return toLong(digest.digest());
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram.
+ *
+ * Lock free histogram of non-negative values, in buckets with the bounds 1,
+ * 2, 5, 10, 20, 50 and so on. Percentiles are estimated as the upper bound of
+ * the bucket they fall in, so they are accurate to that bucket.
+ *
+ * @author agent
+ */
+public class Histogram
+{
+	private static final long[] BOUNDS = bounds();
+
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Histogram()
+	{
+		for (int i = 0; i < buckets.length; i++)
+		{
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	private static long[] bounds()
+	{
+		long[] bounds = new long[30];
+		long decade = 1;
+		for (int i = 0; i < bounds.length; i += 3)
+		{
+			bounds[i] = decade;
+			bounds[i + 1] = 2 * decade;
+			bounds[i + 2] = 5 * decade;
+			decade *= 10;
+		}
+		return bounds;
+	}
+
+	public void record(long value)
+	{
+		long v = Math.max(0, value);
+		int i = 0;
+		while (i < BOUNDS.length && v > BOUNDS[i])
+		{
+			i++;
+		}
+		buckets[i].increment();
+		count.increment();
+		sum.add(v);
+		max.accumulate(v);
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getSum()
+	{
+		return sum.sum();
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	public double getMean()
+	{
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @param quantile the quantile, between 0 and 1
+	 * @return the estimated value at the quantile, 0 if nothing was recorded
+	 */
+	public long getPercentile(double quantile)
+	{
+		long n = count.sum();
+		if (n == 0)
+		{
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * n);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++)
+		{
+			seen += buckets[i].sum();
+			if (seen >= rank)
+			{
+				return Math.min(BOUNDS[i], getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public void reset()
+	{
+		for (LongAdder bucket : buckets)
+		{
+			bucket.reset();
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IndexJournal.
+ *
+ * Write-ahead journal of index transactions. Every transaction is written to
+ * its own file in the journal directory and forced to disk before it is sent
+ * to Solr. The file is deleted once Solr acknowledged the transaction, so the
+ * files left in the directory are exactly the transactions still to be
+ * (re)played, in the order of their file names.
+ *
+ * Files are written under a temporary name and renamed when complete, so a
+ * crash during a write never leaves a partial entry behind.
+ *
+ * @author agent
+ */
+public class IndexJournal
+{
+	private static final Logger LOG = LoggerFactory.getLogger(IndexJournal.class);
+	private static final String SUFFIX = ".journal";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int VERSION = 1;
+
+	private final File directory;
+	private final AtomicLong sequence = new AtomicLong();
+	private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+
+	public IndexJournal(File directory) throws IOException
+	{
+		this.directory = directory;
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create journal directory " + directory.getAbsolutePath());
+		}
+		File[] leftovers = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+		if (leftovers != null)
+		{
+			for (File leftover : leftovers)
+			{
+				LOG.warn("Deleting incomplete journal entry " + leftover.getName());
+				Files.deleteIfExists(leftover.toPath());
+			}
+		}
+		LOG.info("Using index journal in " + directory.getAbsolutePath() + ", " + this.pending().size() + " pending entries");
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * Writes an entry and forces it to disk. The entry is claimed by the
+	 * caller when this method returns.
+	 *
+	 * @param entry the entry
+	 * @return the journal file
+	 * @throws IOException when the entry could not be written durably
+	 */
+	public File write(JournalEntry entry) throws IOException
+	{
+		String name = String.format("%013d-%09d-%s", System.currentTimeMillis(), sequence.incrementAndGet(),
+				sanitize(entry.getPublicationId()));
+		File temp = new File(directory, name + TEMP_SUFFIX);
+		File target = new File(directory, name + SUFFIX);
+
+		Map<String, Object> payload = new LinkedHashMap<>();
+		payload.put("version", VERSION);
+		payload.put("publicationId", entry.getPublicationId());
+		payload.put("adds", entry.getAdds());
+		payload.put("updates", entry.getUpdates());
+		List<Map<String, Object>> binaries = new ArrayList<>(entry.getBinaries().size());
+		for (BinaryDocument binary : entry.getBinaries().values())
+		{
+			binaries.add(binary.toMap());
+		}
+		payload.put("binaries", binaries);
+		payload.put("removals", new ArrayList<>(entry.getRemovals()));
+		payload.put("partialUpdates", entry.getPartialUpdates());
+		payload.put("commit", entry.isCommit());
+		payload.put("fingerprints", entry.getFingerprints());
+		payload.put("fieldDigests", entry.getFieldDigests());
+
+		try (FileOutputStream out = new FileOutputStream(temp);
+			 JavaBinCodec codec = new JavaBinCodec())
+		{
+			BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+			codec.marshal(payload, buffered);
+			buffered.flush();
+			out.getChannel().force(true);
+		}
+		catch (IOException e)
+		{
+			Files.deleteIfExists(temp.toPath());
+			throw e;
+		}
+
+		claimed.add(target.getName());
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		this.syncDirectory();
+		entry.setFile(target);
+		LOG.debug("Journaled " + entry);
+		return target;
+	}
+
+	@SuppressWarnings("unchecked")
+	public JournalEntry read(File file) throws IOException
+	{
+		Map<String, Object> payload;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+			 JavaBinCodec codec = new JavaBinCodec())
+		{
+			payload = (Map<String, Object>) codec.unmarshal(in);
+		}
+
+		JournalEntry entry = new JournalEntry((String) payload.get("publicationId"));
+		entry.setFile(file);
+		entry.setCommit(!Boolean.FALSE.equals(payload.get("commit")));
+		for (Object document : (List<Object>) payload.get("adds"))
+		{
+			entry.getAdds().add((SolrInputDocument) document);
+		}
+		for (Object document : (List<Object>) payload.get("updates"))
+		{
+			entry.getUpdates().add((SolrInputDocument) document);
+		}
+		for (Object binary : (List<Object>) payload.get("binaries"))
+		{
+			BinaryDocument document = BinaryDocument.fromMap((Map<String, Object>) binary);
+			entry.getBinaries().put(document.getId(), document);
+		}
+		for (Object id : (List<Object>) payload.get("removals"))
+		{
+			entry.getRemovals().add((String) id);
+		}
+		Map<String, Object> partialUpdates = (Map<String, Object>) payload.get("partialUpdates");
+		if (partialUpdates != null)
+		{
+			for (Map.Entry<String, Object> partialUpdate : partialUpdates.entrySet())
+			{
+				ArrayList<String> fields = new ArrayList<>();
+				for (Object field : (List<Object>) partialUpdate.getValue())
+				{
+					fields.add((String) field);
+				}
+				entry.getPartialUpdates().put(partialUpdate.getKey(), fields);
+			}
+		}
+		Map<String, Object> fingerprints = (Map<String, Object>) payload.get("fingerprints");
+		if (fingerprints != null)
+		{
+			for (Map.Entry<String, Object> fingerprint : fingerprints.entrySet())
+			{
+				entry.getFingerprints().put(fingerprint.getKey(), ((Number) fingerprint.getValue()).longValue());
+			}
+		}
+		Map<String, Object> fieldDigests = (Map<String, Object>) payload.get("fieldDigests");
+		if (fieldDigests != null)
+		{
+			for (Map.Entry<String, Object> digests : fieldDigests.entrySet())
+			{
+				Map<String, Long> fields = new LinkedHashMap<>();
+				for (Map.Entry<String, Object> digest : ((Map<String, Object>) digests.getValue()).entrySet())
+				{
+					fields.put(digest.getKey(), ((Number) digest.getValue()).longValue());
+				}
+				entry.getFieldDigests().put(digests.getKey(), fields);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the journal files which are not acknowledged yet, oldest first
+	 */
+	public List<File> pending()
+	{
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if (files == null)
+		{
+			return Collections.emptyList();
+		}
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	/**
+	 * @return true if an older entry of the same publication is still pending
+	 */
+	public boolean hasOlderPending(File file)
+	{
+		String publication = publicationOf(file);
+		for (File pending : this.pending())
+		{
+			if (pending.getName().compareTo(file.getName()) >= 0)
+			{
+				break;
+			}
+			if (publication.equals(publicationOf(pending)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Claims an entry for dispatch, so it is not dispatched twice at the same time.
+	 *
+	 * @return true if the entry was claimed, false if someone else holds it
+	 */
+	public boolean claim(File file)
+	{
+		return claimed.add(file.getName());
+	}
+
+	public void release(File file)
+	{
+		claimed.remove(file.getName());
+	}
+
+	/**
+	 * Marks an entry as acknowledged by Solr by removing it from the journal.
+	 */
+	public void complete(File file) throws IOException
+	{
+		Files.deleteIfExists(file.toPath());
+		claimed.remove(file.getName());
+		LOG.debug("Completed journal entry " + file.getName());
+	}
+
+	/**
+	 * Sets an entry which cannot be read, or which Solr rejected, aside, so it
+	 * no longer blocks the entries after it.
+	 */
+	public void quarantine(File file) throws IOException
+	{
+		Files.move(file.toPath(), new File(directory, file.getName() + ".corrupt").toPath(), StandardCopyOption.ATOMIC_MOVE);
+		claimed.remove(file.getName());
+	}
+
+	public static String publicationOf(File file)
+	{
+		String name = file.getName();
+		int start = name.indexOf('-', name.indexOf('-') + 1) + 1;
+		return name.substring(start, name.length() - SUFFIX.length());
+	}
+
+	private static String sanitize(String publicationId)
+	{
+		return publicationId == null ? "" : publicationId.replaceAll("[^A-Za-z0-9_.]", "_");
+	}
+
+	private void syncDirectory()
+	{
+		// Makes the rename durable. Not supported on every platform, hence best effort.
+		try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ))
+		{
+			channel.force(true);
+		}
+		catch (IOException e)
+		{
+			LOG.trace("Could not sync journal directory: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.BaseIndexData;
+import com.tridion.storage.si4t.BinaryIndexData;
+import com.tridion.storage.si4t.SearchIndexData;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IndexRegisters.
+ *
+ * The pending additions, updates and removals of one publication, collected
+ * until the publication is committed. The indexer swaps out the whole set at
+ * commit time, so items registered during a commit end up in a fresh set and
+ * are sent with the next commit.
+ *
+ * @author agent
+ */
+public class IndexRegisters
+{
+	/**
+	 * The estimated heap size of a registered removal.
+	 */
+	public static final long REMOVAL_SIZE = 64;
+
+	private final String publicationId;
+	private final ConcurrentHashMap<String, BaseIndexData> itemRemovals = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, SearchIndexData> itemAdds = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, BinaryIndexData> binaryAdds = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, SearchIndexData> itemUpdates = new ConcurrentHashMap<>();
+	private final AtomicLong pendingBytes = new AtomicLong();
+
+	public IndexRegisters(String publicationId)
+	{
+		this.publicationId = publicationId;
+	}
+
+	public String getPublicationId()
+	{
+		return publicationId;
+	}
+
+	public ConcurrentHashMap<String, BaseIndexData> getItemRemovals()
+	{
+		return itemRemovals;
+	}
+
+	public ConcurrentHashMap<String, SearchIndexData> getItemAdds()
+	{
+		return itemAdds;
+	}
+
+	public ConcurrentHashMap<String, BinaryIndexData> getBinaryAdds()
+	{
+		return binaryAdds;
+	}
+
+	public ConcurrentHashMap<String, SearchIndexData> getItemUpdates()
+	{
+		return itemUpdates;
+	}
+
+	/**
+	 * @return the estimated heap size of the registered items. Replaced items
+	 * are not subtracted, so this may overestimate.
+	 */
+	public long getPendingBytes()
+	{
+		return pendingBytes.get();
+	}
+
+	public void addPendingBytes(long bytes)
+	{
+		pendingBytes.addAndGet(bytes);
+	}
+
+	public int size()
+	{
+		return itemAdds.size() + binaryAdds.size() + itemRemovals.size() + itemUpdates.size();
+	}
+
+	/**
+	 * Adds the items of an older set, e.g. one which failed to be sent. An id
+	 * registered in this set has a newer operation, which replaces all
+	 * operations of the older set for that id, so an older add can never end
+	 * up next to a newer removal or the other way around.
+	 */
+	public void merge(IndexRegisters older)
+	{
+		Set<String> newer = new HashSet<>();
+		newer.addAll(itemAdds.keySet());
+		newer.addAll(binaryAdds.keySet());
+		newer.addAll(itemRemovals.keySet());
+		newer.addAll(itemUpdates.keySet());
+
+		older.getItemAdds().forEach((id, data) -> this.mergeItem(newer, itemAdds, id, data, estimateSize(data)));
+		older.getBinaryAdds().forEach((id, data) -> this.mergeItem(newer, binaryAdds, id, data, estimateSize(data)));
+		older.getItemRemovals().forEach((id, data) -> this.mergeItem(newer, itemRemovals, id, data, REMOVAL_SIZE));
+		older.getItemUpdates().forEach((id, data) -> this.mergeItem(newer, itemUpdates, id, data, estimateSize(data)));
+	}
+
+	private <T> void mergeItem(Set<String> newer, ConcurrentHashMap<String, T> items, String id, T data, long size)
+	{
+		if (!newer.contains(id) && items.putIfAbsent(id, data) == null)
+		{
+			pendingBytes.addAndGet(size);
+		}
+	}
+
+	/**
+	 * Estimates the heap size of the index fields of an item.
+	 */
+	public static long estimateSize(SearchIndexData data)
+	{
+		long size = 64;
+		for (Map.Entry<String, ArrayList<Object>> field : data.getIndexFields().entrySet())
+		{
+			size += 48 + 2L * field.getKey().length();
+			for (Object value : field.getValue())
+			{
+				size += 24 + (value instanceof String ? 2L * ((String) value).length() : 16);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the heap size of a binary by its content.
+	 */
+	public static long estimateSize(BinaryIndexData data)
+	{
+		return data.getContent() != null && data.getContent().getContent() != null ?
+				data.getContent().getContent().length : 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return itemAdds.isEmpty() && binaryAdds.isEmpty() && itemRemovals.isEmpty() && itemUpdates.isEmpty();
+	}
+
+	public void clear()
+	{
+		itemAdds.clear();
+		binaryAdds.clear();
+		itemRemovals.clear();
+		itemUpdates.clear();
+		pendingBytes.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "IndexRegisters [publicationId=" + publicationId + ", adds=" + itemAdds.size() + ", binaries=" +
+				binaryAdds.size() + ", removals=" + itemRemovals.size() + ", updates=" + itemUpdates.size() +
+				", bytes=" + pendingBytes.get() + "]";
+	}
+}
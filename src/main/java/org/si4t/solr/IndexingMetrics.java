@@ -0,0 +1,296 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IndexingMetrics.
+ *
+ * Counters and latency histograms of the indexing of one Solr url, per
+ * operation. The metrics of every url are registered with the platform
+ * MBean server on first use.
+ *
+ * @author agent
+ */
+public class IndexingMetrics implements IndexingMetricsMXBean
+{
+	private static final Logger LOG = LoggerFactory.getLogger(IndexingMetrics.class);
+	private static final ConcurrentHashMap<String, IndexingMetrics> _metrics = new ConcurrentHashMap<>();
+	private static final Set<ObjectName> _registered = ConcurrentHashMap.newKeySet();
+
+	public enum Operation
+	{
+		CONSTRUCT,
+		ADD,
+		EXTRACT,
+		DELETE,
+		DELETE_BY_QUERY,
+		QUERY,
+		STREAM_FLUSH,
+		COMMIT,
+		ADMIN
+	}
+
+	private static class OperationMetrics
+	{
+		private final Histogram latency = new Histogram();
+		private final LongAdder items = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder retries = new LongAdder();
+	}
+
+	private final String url;
+	private final EnumMap<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+	private final Histogram batchSizes = new Histogram();
+	private final Histogram transactionItems = new Histogram();
+	private final Histogram transactionBytes = new Histogram();
+	private final LongAdder documentsSent = new LongAdder();
+	private final LongAdder binariesSent = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+
+	private IndexingMetrics(String url)
+	{
+		this.url = url;
+		for (Operation operation : Operation.values())
+		{
+			operations.put(operation, new OperationMetrics());
+		}
+	}
+
+	/**
+	 * @param url the Solr url
+	 * @return the metrics of the url, registered over JMX when first asked for
+	 */
+	public static IndexingMetrics of(String url)
+	{
+		IndexingMetrics metrics = _metrics.get(url);
+		if (metrics != null)
+		{
+			return metrics;
+		}
+		return _metrics.computeIfAbsent(url, key ->
+		{
+			IndexingMetrics created = new IndexingMetrics(key);
+			register(created, "IndexingMetrics", key);
+			return created;
+		});
+	}
+
+	/**
+	 * Registers an MBean of a Solr url with the platform MBean server, as
+	 * org.si4t.solr:type=&lt;type&gt;,url="&lt;url&gt;". Failing to do so is
+	 * logged only; the MBean still works, it is just not visible over JMX.
+	 */
+	static void register(Object mbean, String type, String url)
+	{
+		try
+		{
+			ObjectName name = new ObjectName("org.si4t.solr:type=" + type + ",url=" + ObjectName.quote(url));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(name))
+			{
+				server.registerMBean(mbean, name);
+				_registered.add(name);
+				LOG.info("Registered " + type + " of " + url + " as " + name);
+			}
+		}
+		catch (JMException e)
+		{
+			LOG.warn("Could not register the " + type + " of " + url + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregisters all MBeans registered through this class from the MBean
+	 * server, and forgets the metrics of all urls.
+	 */
+	public static void unregisterAll()
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : _registered)
+		{
+			try
+			{
+				server.unregisterMBean(name);
+			}
+			catch (JMException e)
+			{
+				LOG.warn("Could not unregister " + name + ": " + e.getMessage());
+			}
+		}
+		_registered.clear();
+		_metrics.clear();
+	}
+
+	/**
+	 * Records a successful operation.
+	 *
+	 * @param items the amount of documents or ids it handled
+	 * @param nanos the time it took
+	 */
+	public void record(Operation operation, int items, long nanos)
+	{
+		OperationMetrics metrics = operations.get(operation);
+		metrics.latency.record(nanos / 1000);
+		metrics.items.add(items);
+	}
+
+	public void recordError(Operation operation)
+	{
+		operations.get(operation).errors.increment();
+	}
+
+	public void recordRetry(Operation operation)
+	{
+		operations.get(operation).retries.increment();
+	}
+
+	/**
+	 * @param documents the documents of an add request which was sent
+	 * @param bytes the estimated size of the documents
+	 */
+	public void recordBatch(int documents, long bytes)
+	{
+		batchSizes.record(documents);
+		documentsSent.add(documents);
+		bytesSent.add(bytes);
+	}
+
+	public void recordBinary(long bytes)
+	{
+		binariesSent.increment();
+		bytesSent.add(bytes);
+	}
+
+	/**
+	 * @param items the amount of items of a transaction about to be sent
+	 * @param bytes the estimated size of the items
+	 */
+	public void recordTransaction(int items, long bytes)
+	{
+		transactionItems.record(items);
+		transactionBytes.record(bytes);
+	}
+
+	@Override
+	public String getUrl()
+	{
+		return url;
+	}
+
+	@Override
+	public Map<String, OperationStatistics> getOperations()
+	{
+		Map<String, OperationStatistics> statistics = new LinkedHashMap<>();
+		for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet())
+		{
+			OperationMetrics metrics = entry.getValue();
+			statistics.put(entry.getKey().name().toLowerCase(), new OperationStatistics(metrics.items.sum(),
+					metrics.errors.sum(), metrics.retries.sum(), metrics.latency));
+		}
+		return statistics;
+	}
+
+	@Override
+	public ValueStatistics getBatchSizes()
+	{
+		return new ValueStatistics(batchSizes);
+	}
+
+	@Override
+	public ValueStatistics getTransactionItems()
+	{
+		return new ValueStatistics(transactionItems);
+	}
+
+	@Override
+	public ValueStatistics getTransactionBytes()
+	{
+		return new ValueStatistics(transactionBytes);
+	}
+
+	@Override
+	public long getDocumentsSent()
+	{
+		return documentsSent.sum();
+	}
+
+	@Override
+	public long getBinariesSent()
+	{
+		return binariesSent.sum();
+	}
+
+	@Override
+	public long getBytesSent()
+	{
+		return bytesSent.sum();
+	}
+
+	@Override
+	public long getErrors()
+	{
+		long errors = 0;
+		for (OperationMetrics metrics : operations.values())
+		{
+			errors += metrics.errors.sum();
+		}
+		return errors;
+	}
+
+	@Override
+	public long getRetries()
+	{
+		long retries = 0;
+		for (OperationMetrics metrics : operations.values())
+		{
+			retries += metrics.retries.sum();
+		}
+		return retries;
+	}
+
+	@Override
+	public void reset()
+	{
+		for (OperationMetrics metrics : operations.values())
+		{
+			metrics.latency.reset();
+			metrics.items.reset();
+			metrics.errors.reset();
+			metrics.retries.reset();
+		}
+		batchSizes.reset();
+		transactionItems.reset();
+		transactionBytes.reset();
+		documentsSent.reset();
+		binariesSent.reset();
+		bytesSent.reset();
+	}
+}
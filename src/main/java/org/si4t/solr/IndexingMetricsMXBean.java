@@ -0,0 +1,210 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import java.util.Map;
+
+/**
+ * IndexingMetricsMXBean.
+ *
+ * The indexing metrics of one Solr url, as exposed over JMX under
+ * org.si4t.solr:type=IndexingMetrics,url="...".
+ *
+ * @author agent
+ */
+public interface IndexingMetricsMXBean
+{
+	String getUrl();
+
+	/**
+	 * @return the statistics of every operation, by operation name
+	 */
+	Map<String, OperationStatistics> getOperations();
+
+	/**
+	 * @return the amount of documents per add request
+	 */
+	ValueStatistics getBatchSizes();
+
+	/**
+	 * @return the amount of items per transaction sent to the url
+	 */
+	ValueStatistics getTransactionItems();
+
+	/**
+	 * @return the estimated size in bytes of the transactions sent to the url
+	 */
+	ValueStatistics getTransactionBytes();
+
+	long getDocumentsSent();
+
+	long getBinariesSent();
+
+	/**
+	 * @return the bytes sent: the binary content plus the estimated size of the documents
+	 */
+	long getBytesSent();
+
+	long getErrors();
+
+	long getRetries();
+
+	void reset();
+
+	/**
+	 * Statistics of one operation. Times are in milliseconds.
+	 */
+	class OperationStatistics
+	{
+		private final long count;
+		private final long items;
+		private final long errors;
+		private final long retries;
+		private final double meanMillis;
+		private final double maxMillis;
+		private final double p50Millis;
+		private final double p95Millis;
+		private final double p99Millis;
+
+		OperationStatistics(long items, long errors, long retries, Histogram latency)
+		{
+			this.count = latency.getCount();
+			this.items = items;
+			this.errors = errors;
+			this.retries = retries;
+			this.meanMillis = latency.getMean() / 1000d;
+			this.maxMillis = latency.getMax() / 1000d;
+			this.p50Millis = latency.getPercentile(0.5) / 1000d;
+			this.p95Millis = latency.getPercentile(0.95) / 1000d;
+			this.p99Millis = latency.getPercentile(0.99) / 1000d;
+		}
+
+		/**
+		 * @return the amount of successful operations
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * @return the amount of documents or ids handled by the successful operations
+		 */
+		public long getItems()
+		{
+			return items;
+		}
+
+		/**
+		 * @return the amount of operations which failed, after retrying
+		 */
+		public long getErrors()
+		{
+			return errors;
+		}
+
+		public long getRetries()
+		{
+			return retries;
+		}
+
+		public double getMeanMillis()
+		{
+			return meanMillis;
+		}
+
+		public double getMaxMillis()
+		{
+			return maxMillis;
+		}
+
+		public double getP50Millis()
+		{
+			return p50Millis;
+		}
+
+		public double getP95Millis()
+		{
+			return p95Millis;
+		}
+
+		public double getP99Millis()
+		{
+			return p99Millis;
+		}
+	}
+
+	/**
+	 * Statistics of recorded values, like batch sizes.
+	 */
+	class ValueStatistics
+	{
+		private final long count;
+		private final long sum;
+		private final double mean;
+		private final long max;
+		private final long p50;
+		private final long p95;
+		private final long p99;
+
+		ValueStatistics(Histogram histogram)
+		{
+			this.count = histogram.getCount();
+			this.sum = histogram.getSum();
+			this.mean = histogram.getMean();
+			this.max = histogram.getMax();
+			this.p50 = histogram.getPercentile(0.5);
+			this.p95 = histogram.getPercentile(0.95);
+			this.p99 = histogram.getPercentile(0.99);
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getSum()
+		{
+			return sum;
+		}
+
+		public double getMean()
+		{
+			return mean;
+		}
+
+		public long getMax()
+		{
+			return max;
+		}
+
+		public long getP50()
+		{
+			return p50;
+		}
+
+		public long getP95()
+		{
+			return p95;
+		}
+
+		public long getP99()
+		{
+			return p99;
+		}
+	}
+}
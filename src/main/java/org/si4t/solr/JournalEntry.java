@@ -0,0 +1,135 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * JournalEntry.
+ *
+ * A transaction of one publication as it is recorded in the index journal:
+ * the constructed documents, binaries and removals, ready to be dispatched,
+ * and the fingerprints and field digests to record once Solr acknowledged it.
+ *
+ * @author agent
+ */
+public class JournalEntry
+{
+	private final String publicationId;
+	private final ArrayList<SolrInputDocument> adds = new ArrayList<>();
+	private final ArrayList<SolrInputDocument> updates = new ArrayList<>();
+	private final LinkedHashMap<String, BinaryDocument> binaries = new LinkedHashMap<>();
+	private final LinkedHashSet<String> removals = new LinkedHashSet<>();
+	private final LinkedHashMap<String, ArrayList<String>> partialUpdates = new LinkedHashMap<>();
+	private final LinkedHashMap<String, Long> fingerprints = new LinkedHashMap<>();
+	private final LinkedHashMap<String, Map<String, Long>> fieldDigests = new LinkedHashMap<>();
+	private boolean commit = true;
+	private File file;
+
+	public JournalEntry(String publicationId)
+	{
+		this.publicationId = publicationId;
+	}
+
+	public String getPublicationId()
+	{
+		return publicationId;
+	}
+
+	public ArrayList<SolrInputDocument> getAdds()
+	{
+		return adds;
+	}
+
+	public ArrayList<SolrInputDocument> getUpdates()
+	{
+		return updates;
+	}
+
+	public LinkedHashMap<String, BinaryDocument> getBinaries()
+	{
+		return binaries;
+	}
+
+	public LinkedHashSet<String> getRemovals()
+	{
+		return removals;
+	}
+
+	/**
+	 * @return the changed fields of the updates which can be sent as atomic updates, by id
+	 */
+	public LinkedHashMap<String, ArrayList<String>> getPartialUpdates()
+	{
+		return partialUpdates;
+	}
+
+	/**
+	 * @return the fingerprints of the sent items, by id
+	 */
+	public LinkedHashMap<String, Long> getFingerprints()
+	{
+		return fingerprints;
+	}
+
+	/**
+	 * @return the field digests of the sent documents, by id
+	 */
+	public LinkedHashMap<String, Map<String, Long>> getFieldDigests()
+	{
+		return fieldDigests;
+	}
+
+	/**
+	 * @return false if the transaction is flushed to Solr without a commit
+	 */
+	public boolean isCommit()
+	{
+		return commit;
+	}
+
+	public void setCommit(boolean commit)
+	{
+		this.commit = commit;
+	}
+
+	/**
+	 * @return the journal file of this entry, or null if it has not been written
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	public void setFile(File file)
+	{
+		this.file = file;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "JournalEntry [publicationId=" + publicationId + ", adds=" + adds.size() + ", updates=" + updates.size() +
+				", binaries=" + binaries.size() + ", removals=" + removals.size() + ", file=" + file + "]";
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
+import org.apache.solr.client.solrj.impl.LBSolrClient;
+import org.apache.solr.common.util.NamedList;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * LeastOutstandingLBHttpSolrClient.
+ *
+ * Load balancing client which sends each request to the url with the fewest
+ * requests in flight, rather than round-robin. If that url fails the others
+ * are tried in the same order; dead urls are still taken out of rotation and
+ * checked again in the background.
+ *
+ * @author agent
+ */
+public class LeastOutstandingLBHttpSolrClient extends LBHttpSolrClient
+{
+	private static final long serialVersionUID = 1L;
+
+	private final OutstandingRequests outstanding;
+
+	public LeastOutstandingLBHttpSolrClient(LBHttpSolrClient.Builder builder, List<String> urls)
+	{
+		super(builder);
+		this.outstanding = new OutstandingRequests(urls);
+	}
+
+	public OutstandingRequests getOutstandingRequests()
+	{
+		return outstanding;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public NamedList<Object> request(SolrRequest request, String collection, Integer numServersToTry)
+			throws SolrServerException, IOException
+	{
+		if (collection != null)
+		{
+			// The servers of a request are base urls, which cannot hold a collection
+			return super.request(request, collection, numServersToTry);
+		}
+		return this.request(new LBSolrClient.Req(request, outstanding.order(), numServersToTry)).getResponse();
+	}
+
+	@Override
+	protected Exception doRequest(String baseUrl, LBSolrClient.Req req, LBSolrClient.Rsp rsp, boolean isNonRetryable,
+								  boolean isZombie) throws SolrServerException, IOException
+	{
+		outstanding.begin(baseUrl);
+		try
+		{
+			return super.doRequest(baseUrl, req, rsp, isNonRetryable, isZombie);
+		}
+		finally
+		{
+			outstanding.end(baseUrl);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.impl.LBSolrClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OutstandingRequests.
+ *
+ * Counts the requests in flight to each url of a load balancer, to send the
+ * next request to the url with the fewest of them. A slow url keeps its
+ * requests longer, so it gets fewer new ones, where round-robin would give it
+ * an equal share. Urls with equal counts take turns.
+ *
+ * @author agent
+ */
+public class OutstandingRequests
+{
+	private final List<String> urls = new ArrayList<>();
+	private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+	private final AtomicInteger turn = new AtomicInteger();
+
+	public OutstandingRequests(List<String> urls)
+	{
+		for (String url : urls)
+		{
+			String normalized = LBSolrClient.normalize(url);
+			this.urls.add(normalized);
+			this.counts.put(normalized, new AtomicInteger());
+		}
+	}
+
+	/**
+	 * @return the urls ordered by their requests in flight, fewest first
+	 */
+	public List<String> order()
+	{
+		List<String> ordered = new ArrayList<>(urls);
+		Collections.rotate(ordered, -Math.floorMod(turn.getAndIncrement(), ordered.size()));
+		// The sort is stable, so urls with equal counts keep the rotated order
+		ordered.sort(Comparator.comparingInt(this::get));
+		return ordered;
+	}
+
+	public void begin(String url)
+	{
+		counter(url).incrementAndGet();
+	}
+
+	public void end(String url)
+	{
+		counter(url).decrementAndGet();
+	}
+
+	/**
+	 * @return the requests in flight to the url
+	 */
+	public int get(String url)
+	{
+		return counter(url).get();
+	}
+
+	private AtomicInteger counter(String url)
+	{
+		return counts.computeIfAbsent(LBSolrClient.normalize(url), key -> new AtomicInteger());
+	}
+}
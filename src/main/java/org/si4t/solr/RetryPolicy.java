@@ -0,0 +1,134 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.solr.common.SolrException;
+
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * RetryPolicy.
+ *
+ * Decides which failures are worth retrying and how long to wait before the
+ * next attempt. Backoff grows exponentially from the initial backoff up to the
+ * maximum backoff, with random jitter so that concurrent deployers do not
+ * retry in lock step.
+ *
+ * @author agent
+ */
+public class RetryPolicy
+{
+	private final int maxRetries;
+	private final long initialBackoff;
+	private final long maxBackoff;
+
+	public RetryPolicy(int maxRetries, long initialBackoff, long maxBackoff)
+	{
+		this.maxRetries = Math.max(0, maxRetries);
+		this.initialBackoff = Math.max(1, initialBackoff);
+		this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+	}
+
+	public int getMaxRetries()
+	{
+		return maxRetries;
+	}
+
+	/**
+	 * @param attempt the number of the retry, starting at 1
+	 * @return the time in milliseconds to wait before the retry
+	 */
+	public long getBackoff(int attempt)
+	{
+		long backoff = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 20));
+		long half = backoff / 2;
+		return half + ThreadLocalRandom.current().nextLong(half + 1);
+	}
+
+	/**
+	 * Transient failures are transport errors such as refused connections,
+	 * timeouts and connections closed before Solr answered, an open circuit, an
+	 * interrupted wait, and the HTTP status codes Solr and proxies return while
+	 * a node is overloaded or restarting. Any other I/O error, such as a binary
+	 * without content, fails the same way on every attempt.
+	 *
+	 * @param t the failure
+	 * @return true if the failure is transient
+	 */
+	public static boolean isTransient(Throwable t)
+	{
+		for (Throwable cause = t; cause != null; cause = cause.getCause())
+		{
+			if (isTransport(cause) || cause instanceof CircuitOpenException || cause instanceof InterruptedException)
+			{
+				return true;
+			}
+			if (cause instanceof SolrException)
+			{
+				int code = ((SolrException) cause).code();
+				return code == 429 || code == 502 || code == 503 || code == 504;
+			}
+			if (cause.getCause() == cause)
+			{
+				break;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isTransport(Throwable t)
+	{
+		return t instanceof SocketException || t instanceof InterruptedIOException ||
+				t instanceof UnknownHostException || t instanceof NoHttpResponseException ||
+				t instanceof EOFException || t instanceof ClosedChannelException || t instanceof TimeoutException;
+	}
+
+	/**
+	 * In SolrCloud a 404 or 510 (invalid state) means the request was routed
+	 * with a cluster state that changed meanwhile, e.g. after a leader moved.
+	 * Sending it again routes it with the current cluster state.
+	 *
+	 * @param t the failure
+	 * @return true if the failure is caused by stale routing
+	 */
+	public static boolean isStaleRouting(Throwable t)
+	{
+		for (Throwable cause = t; cause != null; cause = cause.getCause())
+		{
+			if (cause instanceof SolrException)
+			{
+				int code = ((SolrException) cause).code();
+				if (code == SolrException.ErrorCode.NOT_FOUND.code || code == SolrException.ErrorCode.INVALID_STATE.code)
+				{
+					return true;
+				}
+			}
+			if (cause.getCause() == cause)
+			{
+				break;
+			}
+		}
+		return false;
+	}
+}
@@ -16,6 +16,10 @@
 
 package org.si4t.solr;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * SolrClientRequest.
  * 
@@ -25,14 +29,40 @@ public class SolrClientRequest
 {
 	private String searcherId;
 	private String solrUrl;
+	private String publicationId;
+	private CommitStrategy commitStrategy = CommitStrategy.HARD;
+	private int commitWithin = -1;
+	private boolean optimize = false;
+	private int maxConcurrentBinaryRequests = 4;
+	private int deleteChunkSize = 1000;
+	private int maxConcurrentDeleteRequests = 2;
+	private int maxConcurrentUpdates = 0;
+	private long maxDocumentsPerSecond = 0;
+	private long maxBytesPerSecond = 0;
 
 	@Deprecated
 	private String solrHome;
 	@Deprecated
 	private String solrCore;
 
-	@Deprecated
 	private ServerMode serverMode;
+	private int streamingQueueSize = 100;
+	private int streamingThreads = 2;
+	private Transport transport = Transport.HTTP1;
+	private int maxConnectionsPerRoute = 100;
+	private int maxConnections = 200;
+	private int connectTimeout = 15000;
+	private int socketTimeout = 120000;
+	private int idleConnectionTimeout = 60000;
+	private boolean javabin = true;
+	private List<String> cloudUrls = Collections.emptyList();
+	private int collectionCacheTtl = 60;
+	private int aliveCheckInterval = 60000;
+	private int maxRetries = 3;
+	private long retryBackoff = 500;
+	private long maxRetryBackoff = 10000;
+	private int circuitBreakerThreshold = 5;
+	private long circuitBreakerOpenTime = 30000;
 
 	public SolrClientRequest(String solrUrl)
 	{
@@ -83,6 +113,9 @@ public class SolrClientRequest
 		this.solrCore = solrCore;
 	}
 
+	/**
+	 * @return the Solr url, or in cloud mode the name of the collection
+	 */
 	public String getSolrUrl()
 	{
 		return solrUrl;
@@ -93,21 +126,389 @@ public class SolrClientRequest
 		this.solrUrl = solrUrl;
 	}
 
+	/**
+	 * @return the publication the request is sent for, or null if it is not sent for a single publication
+	 */
+	public String getPublicationId()
+	{
+		return publicationId;
+	}
+
+	/**
+	 * In streaming mode every publication streams its updates through a
+	 * client of its own, so a commit reports the failures of its own
+	 * publication only.
+	 */
+	public void setPublicationId(String publicationId)
+	{
+		this.publicationId = publicationId;
+	}
+
+	/**
+	 * The Solr url may hold a comma separated list of replica urls, which
+	 * are then load balanced.
+	 *
+	 * @return the individual Solr urls
+	 */
+	public List<String> getSolrUrls()
+	{
+		List<String> urls = new ArrayList<>();
+		if (solrUrl != null)
+		{
+			for (String url : solrUrl.split(","))
+			{
+				if (!url.trim().isEmpty())
+				{
+					urls.add(url.trim());
+				}
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * @return the interval in milliseconds in which dead load balanced urls are checked again
+	 */
+	public int getAliveCheckInterval()
+	{
+		return aliveCheckInterval;
+	}
+
+	public void setAliveCheckInterval(int aliveCheckInterval)
+	{
+		this.aliveCheckInterval = aliveCheckInterval;
+	}
+
+	public CommitStrategy getCommitStrategy()
+	{
+		return commitStrategy;
+	}
+
+	public void setCommitStrategy(CommitStrategy commitStrategy)
+	{
+		this.commitStrategy = commitStrategy;
+	}
+
+	/**
+	 * @return the commitWithin in milliseconds to send along with updates,
+	 * or -1 if the commit strategy is not COMMIT_WITHIN.
+	 */
+	public int getCommitWithin()
+	{
+		return commitStrategy == CommitStrategy.COMMIT_WITHIN ? commitWithin : -1;
+	}
+
+	public void setCommitWithin(int commitWithin)
+	{
+		this.commitWithin = commitWithin;
+	}
+
+	public boolean isOptimize()
+	{
+		return optimize;
+	}
+
+	public void setOptimize(boolean optimize)
+	{
+		this.optimize = optimize;
+	}
+
+	public int getMaxConcurrentBinaryRequests()
+	{
+		return maxConcurrentBinaryRequests;
+	}
+
+	public void setMaxConcurrentBinaryRequests(int maxConcurrentBinaryRequests)
+	{
+		this.maxConcurrentBinaryRequests = Math.max(1, maxConcurrentBinaryRequests);
+	}
+
+	public int getDeleteChunkSize()
+	{
+		return deleteChunkSize;
+	}
+
+	public void setDeleteChunkSize(int deleteChunkSize)
+	{
+		this.deleteChunkSize = Math.max(1, deleteChunkSize);
+	}
+
+	public int getMaxConcurrentDeleteRequests()
+	{
+		return maxConcurrentDeleteRequests;
+	}
+
+	public void setMaxConcurrentDeleteRequests(int maxConcurrentDeleteRequests)
+	{
+		this.maxConcurrentDeleteRequests = Math.max(1, maxConcurrentDeleteRequests);
+	}
+
+	/**
+	 * @return the maximum update requests in flight to the Solr url, 0 if unlimited
+	 */
+	public int getMaxConcurrentUpdates()
+	{
+		return maxConcurrentUpdates;
+	}
+
+	public void setMaxConcurrentUpdates(int maxConcurrentUpdates)
+	{
+		this.maxConcurrentUpdates = maxConcurrentUpdates;
+	}
+
+	/**
+	 * @return the maximum documents and binaries sent to the Solr url per second, 0 if unlimited
+	 */
+	public long getMaxDocumentsPerSecond()
+	{
+		return maxDocumentsPerSecond;
+	}
+
+	public void setMaxDocumentsPerSecond(long maxDocumentsPerSecond)
+	{
+		this.maxDocumentsPerSecond = maxDocumentsPerSecond;
+	}
+
+	/**
+	 * @return the maximum (estimated) bytes sent to the Solr url per second, 0 if unlimited
+	 */
+	public long getMaxBytesPerSecond()
+	{
+		return maxBytesPerSecond;
+	}
+
+	public void setMaxBytesPerSecond(long maxBytesPerSecond)
+	{
+		this.maxBytesPerSecond = maxBytesPerSecond;
+	}
+
 	public ServerMode getServerMode()
 	{
 		return serverMode;
 	}
 
-	@Deprecated
 	public void setServerMode(ServerMode serverMode)
 	{
 		this.serverMode = serverMode;
 	}
 
-	@Deprecated
+	public int getStreamingQueueSize()
+	{
+		return streamingQueueSize;
+	}
+
+	public void setStreamingQueueSize(int streamingQueueSize)
+	{
+		this.streamingQueueSize = Math.max(1, streamingQueueSize);
+	}
+
+	public int getStreamingThreads()
+	{
+		return streamingThreads;
+	}
+
+	public void setStreamingThreads(int streamingThreads)
+	{
+		this.streamingThreads = Math.max(1, streamingThreads);
+	}
+
+	public Transport getTransport()
+	{
+		return transport;
+	}
+
+	public void setTransport(Transport transport)
+	{
+		this.transport = transport;
+	}
+
+	public int getMaxConnectionsPerRoute()
+	{
+		return maxConnectionsPerRoute;
+	}
+
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute)
+	{
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public int getMaxConnections()
+	{
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections)
+	{
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * @return the connect timeout in milliseconds
+	 */
+	public int getConnectTimeout()
+	{
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout)
+	{
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * @return the socket (read) timeout in milliseconds
+	 */
+	public int getSocketTimeout()
+	{
+		return socketTimeout;
+	}
+
+	public void setSocketTimeout(int socketTimeout)
+	{
+		this.socketTimeout = socketTimeout;
+	}
+
+	/**
+	 * @return the time in milliseconds after which idle pooled connections are closed
+	 */
+	public int getIdleConnectionTimeout()
+	{
+		return idleConnectionTimeout;
+	}
+
+	public void setIdleConnectionTimeout(int idleConnectionTimeout)
+	{
+		this.idleConnectionTimeout = idleConnectionTimeout;
+	}
+
+	/**
+	 * @return true if update requests are sent in the javabin format, false for XML
+	 */
+	public boolean isJavabin()
+	{
+		return javabin;
+	}
+
+	public void setJavabin(boolean javabin)
+	{
+		this.javabin = javabin;
+	}
+
+	/**
+	 * @return the base urls of the SolrCloud nodes, used in cloud mode
+	 */
+	public List<String> getCloudUrls()
+	{
+		return cloudUrls;
+	}
+
+	public void setCloudUrls(List<String> cloudUrls)
+	{
+		this.cloudUrls = cloudUrls;
+	}
+
+	/**
+	 * @return the time in seconds the cluster state of a collection is cached
+	 */
+	public int getCollectionCacheTtl()
+	{
+		return collectionCacheTtl;
+	}
+
+	public void setCollectionCacheTtl(int collectionCacheTtl)
+	{
+		this.collectionCacheTtl = collectionCacheTtl;
+	}
+
+	public int getMaxRetries()
+	{
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries)
+	{
+		this.maxRetries = maxRetries;
+	}
+
+	/**
+	 * @return the backoff in milliseconds before the first retry
+	 */
+	public long getRetryBackoff()
+	{
+		return retryBackoff;
+	}
+
+	public void setRetryBackoff(long retryBackoff)
+	{
+		this.retryBackoff = retryBackoff;
+	}
+
+	public long getMaxRetryBackoff()
+	{
+		return maxRetryBackoff;
+	}
+
+	public void setMaxRetryBackoff(long maxRetryBackoff)
+	{
+		this.maxRetryBackoff = maxRetryBackoff;
+	}
+
+	public RetryPolicy getRetryPolicy()
+	{
+		return new RetryPolicy(maxRetries, retryBackoff, maxRetryBackoff);
+	}
+
+	/**
+	 * @return the number of consecutive failures after which the circuit of a url opens, 0 to disable
+	 */
+	public int getCircuitBreakerThreshold()
+	{
+		return circuitBreakerThreshold;
+	}
+
+	public void setCircuitBreakerThreshold(int circuitBreakerThreshold)
+	{
+		this.circuitBreakerThreshold = circuitBreakerThreshold;
+	}
+
+	/**
+	 * @return the time in milliseconds an open circuit fails fast before a probe request is let through
+	 */
+	public long getCircuitBreakerOpenTime()
+	{
+		return circuitBreakerOpenTime;
+	}
+
+	public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime)
+	{
+		this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+	}
+
+	/**
+	 * Transport.
+	 * 
+	 * HTTP1: Apache HttpClient 4 with a connection pool.
+	 * HTTP2: Jetty based client, multiplexing concurrent requests over few connections.
+	 */
+	public enum Transport
+	{
+		HTTP1,
+		HTTP2;
+	}
+
+	/**
+	 * ServerMode.
+	 * 
+	 * HTTP: blocking requests, one at a time per caller.
+	 * STREAMING: updates are queued and streamed to Solr by background runner threads.
+	 * CLOUD: SolrCloud aware, updates are sent to the shard leaders of a collection.
+	 */
 	public enum ServerMode
 	{
+		@Deprecated
 		EMBEDDED,
-		HTTP;
+		HTTP,
+		STREAMING,
+		CLOUD;
 	}
 }
@@ -16,31 +16,56 @@
 
 package org.si4t.solr;
 
-import com.tridion.storage.si4t.BinaryIndexData;
 import com.tridion.storage.si4t.Utils;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.BaseHttpClusterStateProvider;
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrClient;
+import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.impl.LBHttp2SolrClient;
+import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.CollectionAdminRequest;
 import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
+import org.apache.solr.client.solrj.response.CollectionAdminResponse;
+import org.apache.solr.client.solrj.request.RequestWriter;
+import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
-import org.apache.solr.common.util.ContentStreamBase.FileStream;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase.ByteArrayStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
 
 /**
@@ -53,150 +78,437 @@ import java.util.concurrent.ConcurrentHashMap;
 public enum SolrIndexDispatcher
 {
 	INSTANCE;
-	private static ConcurrentHashMap<String, HttpSolrClient> _solrServers = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, SolrClient> _solrServers = new ConcurrentHashMap<>();
 	private static ConcurrentHashMap<String, HttpClient> _httpClients = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, Http2SolrClient> _http2Clients = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, Semaphore> _endpointPermits = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, Semaphore> _deletePermits = new ConcurrentHashMap<>();
+	private static ConcurrentHashMap<String, CircuitBreaker> _circuitBreakers = new ConcurrentHashMap<>();
+	private static LongSupplier _circuitBreakerClock = System::currentTimeMillis;
+	private static ConcurrentHashMap<String, AdmissionController> _admissionControllers = new ConcurrentHashMap<>();
 	private static final Logger LOG = LoggerFactory.getLogger(SolrIndexDispatcher.class);
+	private static final int DEFAULT_BINARY_DISPATCH_THREADS = 4;
+	private static int _binaryDispatchThreads = DEFAULT_BINARY_DISPATCH_THREADS;
+	private static ExecutorService _binaryExecutor = null;
+	private static final int DEFAULT_DELETE_DISPATCH_THREADS = 2;
+	private static int _deleteDispatchThreads = DEFAULT_DELETE_DISPATCH_THREADS;
+	private static ExecutorService _deleteExecutor = null;
 
-	private HttpSolrClient getSolrServer(SolrClientRequest clientRequest) throws SolrServerException {
+	private SolrClient getSolrServer(SolrClientRequest clientRequest) throws SolrServerException {
 		switch (clientRequest.getServerMode())
 		{
 			case EMBEDDED:
 				throw new SolrServerException("Embedded Connections are not supported anymore. Change your configuration to use HTTP");
 
 			case HTTP:
+			case STREAMING:
+			case CLOUD:
 			default:
-				if (_solrServers.get(clientRequest.getSolrUrl()) == null)
+				if (_solrServers.get(serverKey(clientRequest)) == null)
 				{
-					LOG.info("Obtaining Http Solr server [" + clientRequest.getSolrUrl() + ": " + clientRequest.getSolrUrl());
-					this.createHttpSolrServer(clientRequest.getSolrUrl());
+					LOG.info("Obtaining " + clientRequest.getServerMode() + " Solr server [" + clientRequest.getSolrUrl() + ": " + clientRequest.getSolrUrl());
+					this.createHttpSolrServer(clientRequest);
 
 				}
-				return _solrServers.get(clientRequest.getSolrUrl());
+				return _solrServers.get(serverKey(clientRequest));
 
 		}
 	}
 
-	private void createHttpSolrServer(String url)
+	/**
+	 * Streaming clients are kept per url and publication, so failures
+	 * collected by their runner threads are reported to the publication which
+	 * caused them. They share the connection pool of the url.
+	 */
+	private static String serverKey(SolrClientRequest clientRequest)
 	{
-		if (_httpClients.get(url) == null)
+		if (clientRequest.getServerMode() == SolrClientRequest.ServerMode.STREAMING &&
+				clientRequest.getPublicationId() != null)
 		{
+			return clientRequest.getSolrUrl() + "|" + clientRequest.getPublicationId();
+		}
+		return clientRequest.getSolrUrl();
+	}
 
-			final HttpSolrClient solrClient = new HttpSolrClient.Builder(url)
-					.withHttpClient(HttpClientBuilder.create().setMaxConnPerRoute(100).build()).build();
-			final HttpClient client = solrClient.getHttpClient();
+	private synchronized void createHttpSolrServer(SolrClientRequest clientRequest)
+	{
+		final String url = clientRequest.getSolrUrl();
+		if (_solrServers.get(serverKey(clientRequest)) != null)
+		{
+			return;
+		}
+
+		final List<String> urls = clientRequest.getSolrUrls();
+		final boolean loadBalanced = urls.size() > 1;
+
+		if (clientRequest.getTransport() == SolrClientRequest.Transport.HTTP2)
+		{
+			final Http2SolrClient solrClient = (loadBalanced ? new Http2SolrClient.Builder() : new Http2SolrClient.Builder(url))
+					.connectionTimeout(clientRequest.getConnectTimeout())
+					.idleTimeout(clientRequest.getSocketTimeout())
+					.maxConnectionsPerHost(clientRequest.getMaxConnectionsPerRoute())
+					.build();
+			solrClient.setRequestWriter(this.createRequestWriter(clientRequest));
+			if (loadBalanced)
+			{
+				final LBHttp2SolrClient lbClient = new LeastOutstandingLBHttp2SolrClient(solrClient, urls);
+				lbClient.setAliveCheckInterval(clientRequest.getAliveCheckInterval());
+				_http2Clients.put(url, solrClient);
+				_solrServers.put(url, lbClient);
+				LOG.info("Created a load balancing Http/2 Solr server client instance for " + urls);
+			}
+			else
+			{
+				_solrServers.put(url, solrClient);
+				LOG.info("Created a Http/2 Solr server client instance for " + url);
+			}
+			return;
+		}
 
+		// All collections of one SolrCloud cluster share a single connection pool
+		final String httpClientKey = clientRequest.getServerMode() == SolrClientRequest.ServerMode.CLOUD ?
+				clientRequest.getCloudUrls().toString() : url;
+		HttpClient client = _httpClients.get(httpClientKey);
+		if (client == null)
+		{
 			LOG.debug(">> Creating HttpClient instance");
-			_httpClients.put(url, client);
-			_solrServers.put(url, solrClient);
+			client = this.createHttpClient(clientRequest);
+			_httpClients.put(httpClientKey, client);
 		}
 		else
 		{
 			LOG.debug(">> Reusing existing HttpClient instance");
+		}
 
+		if (clientRequest.getServerMode() == SolrClientRequest.ServerMode.CLOUD)
+		{
+			final CloudSolrClient solrClient = new CloudSolrClient.Builder(clientRequest.getCloudUrls())
+					.withHttpClient(client)
+					.withConnectionTimeout(clientRequest.getConnectTimeout())
+					.withSocketTimeout(clientRequest.getSocketTimeout())
+					.sendUpdatesOnlyToShardLeaders()
+					.withParallelUpdates(true)
+					.build();
+			solrClient.setDefaultCollection(url);
+			solrClient.setCollectionCacheTTl(clientRequest.getCollectionCacheTtl());
+			if (solrClient.getClusterStateProvider() instanceof BaseHttpClusterStateProvider)
+			{
+				// Only the live nodes and aliases are cached, the collection state is fetched for every request
+				((BaseHttpClusterStateProvider) solrClient.getClusterStateProvider())
+						.setCacheTimeout(clientRequest.getCollectionCacheTtl());
+			}
+			solrClient.getLbClient().setRequestWriter(this.createRequestWriter(clientRequest));
+			_solrServers.put(url, solrClient);
+			LOG.info("Created a SolrCloud client instance for collection " + url + " on nodes " + clientRequest.getCloudUrls());
+		}
+		else if (clientRequest.getServerMode() == SolrClientRequest.ServerMode.STREAMING)
+		{
+			final StreamingSolrClient solrClient = new StreamingSolrClient(new ConcurrentUpdateSolrClient.Builder(url)
+					.withHttpClient(client)
+					.withConnectionTimeout(clientRequest.getConnectTimeout())
+					.withSocketTimeout(clientRequest.getSocketTimeout())
+					.withQueueSize(clientRequest.getStreamingQueueSize())
+					.withThreadCount(clientRequest.getStreamingThreads()));
+			solrClient.setRequestWriter(this.createRequestWriter(clientRequest));
+			_solrServers.put(serverKey(clientRequest), solrClient);
+			LOG.info("Created a streaming Solr server client instance for " + serverKey(clientRequest) + " with queue size " +
+					clientRequest.getStreamingQueueSize() + " and " + clientRequest.getStreamingThreads() + " runner threads");
+		}
+		else if (loadBalanced)
+		{
+			final LBHttpSolrClient solrClient = new LeastOutstandingLBHttpSolrClient(new LBHttpSolrClient.Builder()
+					.withBaseSolrUrls(urls.toArray(new String[0]))
+					.withHttpClient(client)
+					.withConnectionTimeout(clientRequest.getConnectTimeout())
+					.withSocketTimeout(clientRequest.getSocketTimeout()), urls);
+			solrClient.setAliveCheckInterval(clientRequest.getAliveCheckInterval());
+			solrClient.setRequestWriter(this.createRequestWriter(clientRequest));
+			_solrServers.put(url, solrClient);
+			LOG.info("Created a load balancing Solr server client instance for " + urls);
+		}
+		else
+		{
 			final HttpSolrClient solrClient = new HttpSolrClient.Builder(url)
-					.withHttpClient(_httpClients.get(url)).build();
+					.withHttpClient(client)
+					.withConnectionTimeout(clientRequest.getConnectTimeout())
+					.withSocketTimeout(clientRequest.getSocketTimeout())
+					.build();
+			solrClient.setRequestWriter(this.createRequestWriter(clientRequest));
 			_solrServers.put(url, solrClient);
+			LOG.info("Created a Commons Http Solr server client instance for " + url);
 		}
-		LOG.info("Created a Commons Http Solr server client instance for " + url);
 	}
 
-	public String addBinaries(ConcurrentHashMap<String, BinaryIndexData> binaryAdds, SolrClientRequest clientRequest) throws IOException, SolrServerException {
+	/**
+	 * Javabin is more compact and cheaper to serialize than XML, which
+	 * matters for documents with large rich text fields.
+	 */
+	private RequestWriter createRequestWriter(SolrClientRequest clientRequest)
+	{
+		LOG.info("Sending update requests to " + clientRequest.getSolrUrl() + " as " + (clientRequest.isJavabin() ? "javabin" : "XML"));
+		return clientRequest.isJavabin() ? new BinaryRequestWriter() : new RequestWriter();
+	}
 
-		HttpSolrClient solrClient;
+	private HttpClient createHttpClient(SolrClientRequest clientRequest)
+	{
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(clientRequest.getConnectTimeout())
+				.setConnectionRequestTimeout(clientRequest.getConnectTimeout())
+				.setSocketTimeout(clientRequest.getSocketTimeout())
+				.build();
 
-		solrClient = this.getSolrServer(clientRequest);
-		LOG.debug("about to add binaries with solr url " + clientRequest.getSolrUrl());
+		HttpClientBuilder builder = HttpClientBuilder.create()
+				.setMaxConnPerRoute(clientRequest.getMaxConnectionsPerRoute())
+				.setMaxConnTotal(clientRequest.getMaxConnections())
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections();
+		if (clientRequest.getIdleConnectionTimeout() > 0)
+		{
+			builder.evictIdleConnections(clientRequest.getIdleConnectionTimeout(), TimeUnit.MILLISECONDS);
+		}
+		LOG.info("Connection pool: " + clientRequest.getMaxConnectionsPerRoute() + " connections per route, " +
+				clientRequest.getMaxConnections() + " in total, connect timeout " + clientRequest.getConnectTimeout() +
+				"ms, socket timeout " + clientRequest.getSocketTimeout() + "ms, idle timeout " +
+				clientRequest.getIdleConnectionTimeout() + "ms");
+		return builder.build();
+	}
 
-		if (solrClient == null)
+	/**
+	 * Sets the clock of the circuit breakers created from now on, so tests
+	 * can let the open time pass without waiting for it.
+	 *
+	 * @param clock the current time in milliseconds
+	 */
+	void setCircuitBreakerClock(LongSupplier clock)
+	{
+		_circuitBreakerClock = clock;
+	}
+
+	/**
+	 * Sets the amount of worker threads used to dispatch binaries. Takes
+	 * effect when the binary executor is created, i.e. on first use.
+	 *
+	 * @param threads the amount of worker threads
+	 */
+	public void setBinaryDispatchThreads(int threads)
+	{
+		_binaryDispatchThreads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets the amount of worker threads used to dispatch delete chunks, apart
+	 * from the binary workers so large removals and binaries do not wait for
+	 * each other. Takes effect when the delete executor is created, i.e. on first use.
+	 *
+	 * @param threads the amount of worker threads
+	 */
+	public void setDeleteDispatchThreads(int threads)
+	{
+		_deleteDispatchThreads = Math.max(1, threads);
+	}
+
+	private synchronized ExecutorService getBinaryExecutor()
+	{
+		if (_binaryExecutor == null || _binaryExecutor.isShutdown())
 		{
-			throw new SolrServerException("Solr server not instantiated.");
+			LOG.info("Creating binary dispatch executor with " + _binaryDispatchThreads + " threads");
+			_binaryExecutor = createExecutor("si4t-solr-binary-", _binaryDispatchThreads);
 		}
-		StringBuilder rsp = new StringBuilder();
-		String rspResponse = " path not found";
+		return _binaryExecutor;
+	}
 
-		for (Map.Entry<String, BinaryIndexData> entry : binaryAdds.entrySet())
+	private synchronized ExecutorService getDeleteExecutor()
+	{
+		if (_deleteExecutor == null || _deleteExecutor.isShutdown())
 		{
-			BinaryIndexData data = entry.getValue();
+			LOG.info("Creating delete dispatch executor with " + _deleteDispatchThreads + " threads");
+			_deleteExecutor = createExecutor("si4t-solr-delete-", _deleteDispatchThreads);
+		}
+		return _deleteExecutor;
+	}
 
-			LOG.debug("Dispatching binary content to Solr with key " + entry.getKey());
+	private static ExecutorService createExecutor(String threadName, int threads)
+	{
+		final AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, r ->
+		{
+			Thread t = new Thread(r, threadName + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
 
-			FileStream fs = this.getBinaryInputStream(data);
+	/**
+	 * Dispatches binaries to the extract handler concurrently. The amount of
+	 * parallel requests to one Solr URL is bounded by the maximum concurrent
+	 * binary requests of the client request. All binaries are attempted; when
+	 * one or more fail, a SolrServerException listing all failed keys is
+	 * thrown after the others finished.
+	 *
+	 * @param binaryAdds the binaries to add, by key
+	 * @param clientRequest the client request
+	 * @return the response, for logging purposes
+	 * @throws IOException IOException
+	 * @throws SolrServerException when one or more binaries failed
+	 */
+	public String addBinaries(Map<String, BinaryDocument> binaryAdds, SolrClientRequest clientRequest) throws IOException, SolrServerException {
 
-			String id = data.getUniqueIndexId();
-			LOG.info("Indexing binary with Id: " + id + ", and URL Path:" + data.getIndexUrl());
-			ContentStreamUpdateRequest up = new ContentStreamUpdateRequest("/update/extract");
+		final SolrClient solrClient = this.getSolrServer(clientRequest);
+		LOG.debug("about to add binaries with solr url " + clientRequest.getSolrUrl());
 
-			up.addContentStream(fs);
+		if (solrClient == null)
+		{
+			throw new SolrServerException("Solr server not instantiated.");
+		}
 
-			up.setParam("literal.id", id);
-			up.setParam("literal.publicationid",data.getPublicationItemId());
-			up.setParam("literal.pubdate", "NOW");
-			up.setParam("literal.url", data.getIndexUrl().replace(" ", "%20"));
+		final Semaphore permits = _endpointPermits.computeIfAbsent(clientRequest.getSolrUrl(),
+				url -> new Semaphore(clientRequest.getMaxConcurrentBinaryRequests(), true));
+		LinkedHashMap<String, SolrCall<String>> calls = new LinkedHashMap<>();
+		for (Map.Entry<String, BinaryDocument> entry : binaryAdds.entrySet())
+		{
+			final BinaryDocument data = entry.getValue();
+			calls.put(entry.getKey(), () -> this.addBinary(solrClient, data, clientRequest));
+		}
 
-			if (!Utils.StringIsNullOrEmpty(data.getFileSize()))
-            {
-                up.setParam("literal.fileSize", data.getFileSize());
-            }
-			if (!Utils.StringIsNullOrEmpty(data.getFileType()))
-            {
-                up.setParam("literal.fileType", data.getFileType());
-            }
-			up.setParam("defaultField", "binary_content");
+		return ("Adding binaries had the following response: " +
+				this.dispatchConcurrently(calls, this.getBinaryExecutor(), permits, "binaries"));
+	}
 
-			UpdateResponse serverrsp;
+	/**
+	 * Runs calls on the dispatch executor, at most as many at a time as the
+	 * permits allow. All calls are attempted; when one or more fail, a
+	 * SolrServerException listing all failed keys is thrown after the others
+	 * finished.
+	 *
+	 * @param calls the calls to run, by key
+	 * @param permits the permits bounding the concurrent requests to one Solr url
+	 * @param what what the calls dispatch, for logging purposes
+	 * @return the responses of all calls, one per line
+	 * @throws SolrServerException when one or more calls failed
+	 */
+	private String dispatchConcurrently(LinkedHashMap<String, SolrCall<String>> calls, ExecutorService executor,
+										Semaphore permits, String what) throws SolrServerException
+	{
+		LinkedHashMap<String, Future<String>> results = new LinkedHashMap<>();
 
-			serverrsp = up.process(solrClient);
-			rsp.append(serverrsp.getResponse());
+		try
+		{
+			for (Map.Entry<String, SolrCall<String>> entry : calls.entrySet())
+			{
+				final SolrCall<String> call = entry.getValue();
+				LOG.debug("Dispatching " + what + " to Solr with key " + entry.getKey());
 
-			LOG.info("Committing adding binaries.");
-			rsp.append("\n");
+				permits.acquire();
+				try
+				{
+					results.put(entry.getKey(), executor.submit(() ->
+					{
+						try
+						{
+							return call.call();
+						}
+						finally
+						{
+							permits.release();
+						}
+					}));
+				}
+				catch (RejectedExecutionException e)
+				{
+					permits.release();
+					throw e;
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SolrServerException("Interrupted while dispatching " + what, e);
+		}
 
-			serverrsp = solrClient.commit();
-			rsp.append(serverrsp.getResponse());
+		StringBuilder rsp = new StringBuilder();
+		LinkedHashMap<String, Throwable> failures = new LinkedHashMap<>();
+		for (Map.Entry<String, Future<String>> result : results.entrySet())
+		{
+			try
+			{
+				rsp.append(result.getValue().get());
+				rsp.append("\n");
+			}
+			catch (ExecutionException e)
+			{
+				LOG.error("Dispatching " + what + " " + result.getKey() + " failed: " + e.getCause().getMessage(), e.getCause());
+				failures.put(result.getKey(), e.getCause());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new SolrServerException("Interrupted while waiting for " + what + " to be dispatched", e);
+			}
+		}
 
-			rspResponse = rsp.toString();
+		if (!failures.isEmpty())
+		{
+			// A permanent failure fails the calls on every attempt, so it decides whether they are retried
+			Throwable cause = failures.values().stream().filter(f -> !RetryPolicy.isTransient(f)).findFirst()
+					.orElse(failures.values().iterator().next());
+			throw new SolrServerException("Dispatching " + failures.size() + " of " + calls.size() + " " + what +
+					" failed: " + failures.keySet(), cause);
 		}
-		return ("Adding binaries had the following response: " + rspResponse);
+		return rsp.toString();
 	}
 
-	private FileStream getBinaryInputStream(BinaryIndexData data) throws IOException
+	private String addBinary(SolrClient solrClient, BinaryDocument data, SolrClientRequest clientRequest) throws IOException, SolrServerException
 	{
-		String fileName = Utils.GetBinaryFileName(data.getFileName());
+		ContentStream fs = this.getBinaryInputStream(data);
 
-		if (fileName.length() < 3)
-		{
-			fileName += "000";
-		}
+		String id = data.getId();
+		LOG.info("Indexing binary with Id: " + id + ", and URL Path:" + data.getUrl());
+		ContentStreamUpdateRequest up = new ContentStreamUpdateRequest("/update/extract");
 
-		String fileExtension = Utils.GetBinaryFileExtension(data.getFileName());
-		File tempBinaryFile = null;
-		OutputStream out = null;
-		try
-		{
-			tempBinaryFile = File.createTempFile(fileName, fileExtension, null);
-			LOG.trace("File created: " + tempBinaryFile.getAbsolutePath());
-			tempBinaryFile.deleteOnExit();
-			out = new FileOutputStream(tempBinaryFile);
-			IOUtils.write(data.getContent().getContent(), out);
-			LOG.trace("IOUtils is done writing binary content.");
-		} catch (IOException e)
+		up.addContentStream(fs);
+
+		up.setParam("literal.id", id);
+		up.setParam("literal.publicationid",data.getPublicationId());
+		up.setParam("literal.pubdate", "NOW");
+		up.setParam("literal.url", data.getUrl().replace(" ", "%20"));
+
+		if (!Utils.StringIsNullOrEmpty(data.getFileSize()))
 		{
-			LOG.error(e.getLocalizedMessage(),e);
-			throw e;
+			up.setParam("literal.fileSize", data.getFileSize());
 		}
-		finally
+		if (!Utils.StringIsNullOrEmpty(data.getFileType()))
 		{
-			if ( tempBinaryFile != null ) {
-				tempBinaryFile.deleteOnExit();
-			}
-			IOUtils.closeQuietly(out);
+			up.setParam("literal.fileType", data.getFileType());
 		}
+		up.setParam("defaultField", "binary_content");
+		up.setCommitWithin(clientRequest.getCommitWithin());
 
-		return new FileStream(tempBinaryFile);
+		UpdateResponse serverrsp = this.execute(clientRequest, IndexingMetrics.Operation.EXTRACT, 1,
+				data.getContent().length, "Extracting binary " + id, () -> up.process(solrClient));
+		IndexingMetrics.of(clientRequest.getSolrUrl()).recordBinary(data.getContent().length);
+		return String.valueOf(serverrsp.getResponse());
+	}
+
+	/**
+	 * Wraps the in-memory binary content as a content stream, so it is
+	 * streamed straight into the extract request without a temporary file.
+	 * The stream carries the original file name, which lets Tika detect the
+	 * document type.
+	 */
+	private ContentStream getBinaryInputStream(BinaryDocument data)
+	{
+		if (data.getContent() == null)
+		{
+			throw new UnindexableContentException("Binary with Id " + data.getId() + " has no content.");
+		}
+		byte[] content = data.getContent();
+		LOG.trace("Streaming " + content.length + " bytes of binary content from memory.");
+		return new ByteArrayStream(content, data.getFileName());
 	}
 
 	public String addDocuments(DispatcherPackage dispatcherPackage) throws ParserConfigurationException, IOException, SAXException, SolrServerException {
-		HttpSolrClient solrClient = this.getSolrServer(dispatcherPackage.getRequest());
+		SolrClient solrClient = this.getSolrServer(dispatcherPackage.getRequest());
 		if (solrClient == null)
 		{
 			throw new SolrServerException("Solr server not instantiated.");
@@ -208,6 +520,8 @@ public enum SolrIndexDispatcher
 			throw new NullPointerException("Document list is null");
 		}
 
+		boolean trace = LOG.isTraceEnabled();
+		ArrayList<SolrInputDocument> validDocuments = new ArrayList<>(documents.size());
 		for (SolrInputDocument d : documents)
 		{
 			if (d == null || d.isEmpty())
@@ -216,35 +530,490 @@ public enum SolrIndexDispatcher
 			}
 			else
 			{
-				LOG.info(Utils.RemoveLineBreaks(d.toString()));
-				solrClient.add(d);
+				if (trace)
+				{
+					LOG.trace(Utils.RemoveLineBreaks(d.toString()));
+				}
+				validDocuments.add(d);
 			}
 		}
 
-		UpdateResponse serverrsp = solrClient.commit(true, true);
+		if (validDocuments.isEmpty())
+		{
+			return ("Processing " + documents.size() + " documents: nothing to send.");
+		}
+		if (LOG.isInfoEnabled())
+		{
+			LOG.info("Sending " + validDocuments.size() + " documents to " + dispatcherPackage.getRequest().getSolrUrl() +
+					", ids " + validDocuments.get(0).getFieldValue("id") + " .. " +
+					validDocuments.get(validDocuments.size() - 1).getFieldValue("id"));
+		}
+
+		final SolrClientRequest clientRequest = dispatcherPackage.getRequest();
+		long bytes = 0;
+		for (SolrInputDocument d : validDocuments)
+		{
+			bytes += DocumentBatcher.estimateSize(d);
+		}
+		// Timed per attempt, so the time spent waiting to be admitted or to retry is left out
+		long[] requestTime = new long[1];
+		UpdateResponse serverrsp = this.execute(clientRequest, IndexingMetrics.Operation.ADD, validDocuments.size(),
+				bytes, "Adding " + validDocuments.size() + " documents", () ->
+				{
+					long start = System.nanoTime();
+					UpdateResponse response = solrClient.add(validDocuments, clientRequest.getCommitWithin());
+					requestTime[0] = System.nanoTime() - start;
+					return response;
+				});
+		dispatcherPackage.setRequestTime(TimeUnit.NANOSECONDS.toMillis(requestTime[0]));
+		IndexingMetrics.of(clientRequest.getSolrUrl()).recordBatch(validDocuments.size(), bytes);
 
 		return ("Processing " + documents.size() + " documents had the following response: " + serverrsp.getResponse());
 	}
 
+	/**
+	 * Deletes documents by id, in chunks of the delete chunk size of the
+	 * client request. Chunks are sent concurrently, at most the maximum
+	 * concurrent delete requests of the client request at a time per Solr URL.
+	 *
+	 * @param ids the ids to delete
+	 * @param clientRequest the client request
+	 * @return the response, for logging purposes
+	 * @throws SolrServerException when one or more chunks failed
+	 * @throws IOException IOException
+	 */
 	public String removeFromSolr(Set<String> ids, SolrClientRequest clientRequest) throws SolrServerException, IOException, ParserConfigurationException, SAXException {
-		HttpSolrClient solrClient = this.getSolrServer(clientRequest);
+		final SolrClient solrClient = this.getSolrServer(clientRequest);
+		if (solrClient == null)
+		{
+			throw new SolrServerException("Solr server not instantiated.");
+		}
+		if (LOG.isTraceEnabled())
+		{
+			LOG.trace("Removing: " + ids);
+		}
+
+		int chunkSize = clientRequest.getDeleteChunkSize();
+		List<List<String>> chunks = new ArrayList<>(ids.size() / chunkSize + 1);
+		ArrayList<String> chunk = new ArrayList<>(Math.min(chunkSize, ids.size()));
+		for (String id : ids)
+		{
+			chunk.add(id);
+			if (chunk.size() == chunkSize)
+			{
+				chunks.add(chunk);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+		if (!chunk.isEmpty())
+		{
+			chunks.add(chunk);
+		}
+
+		if (chunks.size() == 1)
+		{
+			return ("Deleting " + ids.size() + " document(s) had the following response: " +
+					this.deleteChunk(solrClient, chunks.get(0), clientRequest));
+		}
+
+		final Semaphore permits = _deletePermits.computeIfAbsent(clientRequest.getSolrUrl(),
+				url -> new Semaphore(clientRequest.getMaxConcurrentDeleteRequests(), true));
+		LinkedHashMap<String, SolrCall<String>> calls = new LinkedHashMap<>();
+		for (int i = 0; i < chunks.size(); i++)
+		{
+			final List<String> idList = chunks.get(i);
+			calls.put("chunk " + (i + 1), () -> this.deleteChunk(solrClient, idList, clientRequest));
+		}
+		return ("Deleting " + ids.size() + " document(s) in " + chunks.size() + " chunks had the following response: " +
+				this.dispatchConcurrently(calls, this.getDeleteExecutor(), permits, "deletes"));
+	}
+
+	private String deleteChunk(SolrClient solrClient, List<String> ids, SolrClientRequest clientRequest) throws SolrServerException, IOException
+	{
+		UpdateResponse response = this.execute(clientRequest, IndexingMetrics.Operation.DELETE, ids.size(), 0,
+				"Deleting " + ids.size() + " documents",
+				() -> solrClient.deleteById(ids, clientRequest.getCommitWithin()));
+		return String.valueOf(response.getResponse());
+	}
+
+	/**
+	 * Deletes all documents matching a query.
+	 *
+	 * @param query the query
+	 * @param clientRequest the client request
+	 * @return the response, for logging purposes
+	 * @throws SolrServerException SolrServerException
+	 * @throws IOException IOException
+	 */
+	public String removeByQuery(String query, SolrClientRequest clientRequest) throws SolrServerException, IOException
+	{
+		SolrClient solrClient = this.getSolrServer(clientRequest);
+		if (solrClient == null)
+		{
+			throw new SolrServerException("Solr server not instantiated.");
+		}
+		UpdateResponse response = this.execute(clientRequest, IndexingMetrics.Operation.DELETE_BY_QUERY, 0, 0,
+				"Deleting by query " + query,
+				() -> solrClient.deleteByQuery(query, clientRequest.getCommitWithin()));
+		return ("Deleting by query " + query + " had the following response: " + response.getResponse());
+	}
+
+	/**
+	 * Finds the ids of the documents in which a field has a value.
+	 *
+	 * @param field the field
+	 * @param value the value
+	 * @param maxIds the maximum number of ids to return
+	 * @param clientRequest the client request
+	 * @return the ids, or null if more than maxIds documents match
+	 * @throws SolrServerException SolrServerException
+	 * @throws IOException IOException
+	 */
+	public List<String> findIds(String field, String value, int maxIds, SolrClientRequest clientRequest) throws SolrServerException, IOException
+	{
+		SolrClient solrClient = this.getSolrServer(clientRequest);
 		if (solrClient == null)
 		{
 			throw new SolrServerException("Solr server not instantiated.");
 		}
-		ArrayList<String> idList = new ArrayList<>(ids);
-		for (String id : idList)
+		SolrQuery query = new SolrQuery(field + ":" + ClientUtils.escapeQueryChars(value));
+		query.setFields("id");
+		query.setRows(maxIds);
+		QueryResponse response = this.execute(clientRequest, IndexingMetrics.Operation.QUERY, 0, 0,
+				"Finding documents with " + field + " " + value,
+				() -> solrClient.query(query));
+		SolrDocumentList results = response.getResults();
+		if (results.getNumFound() > maxIds)
+		{
+			return null;
+		}
+		List<String> ids = new ArrayList<>(results.size());
+		for (SolrDocument document : results)
+		{
+			ids.add(String.valueOf(document.getFieldValue("id")));
+		}
+		return ids;
+	}
+
+	/**
+	 * Makes the changes of a transaction visible according to the
+	 * commit strategy of the request. Optimizes the index instead if the
+	 * request asks for it, as an optimize implies a hard commit.
+	 * 
+	 * In streaming mode this first waits for all queued updates to be sent,
+	 * and fails if any of them were rejected by Solr.
+	 *
+	 * @param clientRequest the client request
+	 * @return the response, for logging purposes
+	 * @throws SolrServerException SolrServerException
+	 * @throws IOException IOException
+	 */
+	public String commit(SolrClientRequest clientRequest) throws SolrServerException, IOException
+	{
+		SolrClient solrClient = this.getSolrServer(clientRequest);
+		if (solrClient == null)
+		{
+			throw new SolrServerException("Solr server not instantiated.");
+		}
+
+		if (solrClient instanceof StreamingSolrClient)
+		{
+			IndexingMetrics metrics = IndexingMetrics.of(clientRequest.getSolrUrl());
+			long start = System.nanoTime();
+			try
+			{
+				this.finishStreaming(clientRequest);
+			}
+			catch (SolrServerException | IOException e)
+			{
+				metrics.recordError(IndexingMetrics.Operation.STREAM_FLUSH);
+				throw e;
+			}
+			metrics.record(IndexingMetrics.Operation.STREAM_FLUSH, 0, System.nanoTime() - start);
+		}
+
+		UpdateResponse response;
+		if (clientRequest.isOptimize())
+		{
+			LOG.info("Optimizing index at " + clientRequest.getSolrUrl());
+			response = this.execute(clientRequest, IndexingMetrics.Operation.COMMIT, 0, 0, "Optimize", () -> solrClient.optimize(true, true));
+			return ("Optimize had the following response: " + response.getResponse());
+		}
+
+		switch (clientRequest.getCommitStrategy())
+		{
+			case SOFT:
+				response = this.execute(clientRequest, IndexingMetrics.Operation.COMMIT, 0, 0, "Soft commit", () -> solrClient.commit(true, true, true));
+				break;
+			case HARD:
+				response = this.execute(clientRequest, IndexingMetrics.Operation.COMMIT, 0, 0, "Commit", () -> solrClient.commit(true, true));
+				break;
+			case COMMIT_WITHIN:
+			case NONE:
+			default:
+				return ("No commit sent, commit strategy is " + clientRequest.getCommitStrategy());
+		}
+		return ("Commit (" + clientRequest.getCommitStrategy() + ") had the following response: " + response.getResponse());
+	}
+
+	/**
+	 * Points a SolrCloud alias to the collection of the client request,
+	 * creating the alias or replacing the collection it pointed to.
+	 *
+	 * @param alias the alias
+	 * @param clientRequest the client request of the collection
+	 * @return the response, for logging purposes
+	 * @throws SolrServerException SolrServerException
+	 * @throws IOException IOException
+	 */
+	public String createAlias(String alias, SolrClientRequest clientRequest) throws SolrServerException, IOException
+	{
+		if (clientRequest.getServerMode() != SolrClientRequest.ServerMode.CLOUD)
+		{
+			throw new SolrServerException("Aliases require the cloud Mode");
+		}
+		SolrClient solrClient = this.getSolrServer(clientRequest);
+		if (solrClient == null)
+		{
+			throw new SolrServerException("Solr server not instantiated.");
+		}
+		LOG.info("Pointing alias " + alias + " to collection " + clientRequest.getSolrUrl());
+		CollectionAdminResponse response = this.execute(clientRequest, IndexingMetrics.Operation.ADMIN, 0, 0,
+				"Creating alias " + alias, () -> CollectionAdminRequest.createAlias(alias, clientRequest.getSolrUrl())
+						.process(solrClient));
+		return ("Pointing alias " + alias + " to " + clientRequest.getSolrUrl() + " had the following response: " +
+				response.getResponse());
+	}
+
+	/**
+	 * A call to Solr which may be retried.
+	 */
+	@FunctionalInterface
+	private interface SolrCall<T>
+	{
+		T call() throws SolrServerException, IOException;
+	}
+
+	/**
+	 * Executes a call to Solr, retrying transient failures with a jittered
+	 * exponential backoff. The circuit breaker of the Solr url makes the call
+	 * fail fast while the url is known to be down. Every attempt of an update
+	 * is admitted by the admission controller of the url first. The time of the
+	 * successful attempt, retries and failures are recorded in the metrics of the url.
+	 *
+	 * @param metric the operation to record the call as
+	 * @param items the amount of documents or ids the call handles
+	 * @param bytes the (estimated) amount of bytes the call sends
+	 */
+	private <T> T execute(SolrClientRequest clientRequest, IndexingMetrics.Operation metric, int items, long bytes,
+						  String operation, SolrCall<T> call) throws SolrServerException, IOException
+	{
+		final String url = clientRequest.getSolrUrl();
+		IndexingMetrics metrics = IndexingMetrics.of(url);
+		CircuitBreaker breaker = _circuitBreakers.computeIfAbsent(url,
+				key -> new CircuitBreaker(key, clientRequest.getCircuitBreakerThreshold(), clientRequest.getCircuitBreakerOpenTime(),
+						_circuitBreakerClock));
+		RetryPolicy retryPolicy = clientRequest.getRetryPolicy();
+		AdmissionController admission = metric == IndexingMetrics.Operation.QUERY || metric == IndexingMetrics.Operation.ADMIN ?
+				null : this.getAdmissionController(clientRequest);
+		long documents = metric == IndexingMetrics.Operation.ADD || metric == IndexingMetrics.Operation.EXTRACT ? items : 0;
+
+		int attempt = 0;
+		while (true)
+		{
+			if (!breaker.allowRequest())
+			{
+				metrics.recordError(metric);
+				throw new CircuitOpenException(operation + " failed: Solr at " + url + " is unavailable (circuit open).");
+			}
+			// Every exit records an outcome, so a probe of a half open circuit is never lost
+			boolean recorded = false;
+			try
+			{
+				if (admission != null)
+				{
+					try
+					{
+						admission.acquire(documents, bytes);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						metrics.recordError(metric);
+						throw new SolrServerException("Interrupted while waiting to be admitted: " + operation, e);
+					}
+				}
+				long start = System.nanoTime();
+				try
+				{
+					T result;
+					try
+					{
+						result = call.call();
+					}
+					finally
+					{
+						if (admission != null)
+						{
+							admission.release();
+						}
+					}
+					metrics.record(metric, items, System.nanoTime() - start);
+					breaker.recordSuccess();
+					recorded = true;
+					return result;
+				}
+				catch (SolrServerException | IOException | SolrException e)
+				{
+					// The cloud client fetches the cluster state for every request, so a retry is routed afresh
+					boolean staleRouting = clientRequest.getServerMode() == SolrClientRequest.ServerMode.CLOUD &&
+							RetryPolicy.isStaleRouting(e);
+					if (staleRouting || !RetryPolicy.isTransient(e))
+					{
+						// Solr did answer, so the url itself is healthy
+						breaker.recordSuccess();
+					}
+					else
+					{
+						breaker.recordFailure();
+					}
+					recorded = true;
+					if (!staleRouting && !RetryPolicy.isTransient(e))
+					{
+						metrics.recordError(metric);
+						throw e;
+					}
+					attempt++;
+					if (attempt > retryPolicy.getMaxRetries())
+					{
+						metrics.recordError(metric);
+						throw e;
+					}
+					metrics.recordRetry(metric);
+					long backoff = retryPolicy.getBackoff(attempt);
+					LOG.warn(operation + " on " + url + " failed: " + e.getMessage() + ". Retry " + attempt + " of " +
+							retryPolicy.getMaxRetries() + " in " + backoff + "ms");
+					try
+					{
+						Thread.sleep(backoff);
+					}
+					catch (InterruptedException ie)
+					{
+						Thread.currentThread().interrupt();
+						metrics.recordError(metric);
+						throw new SolrServerException("Interrupted while waiting to retry: " + operation, e);
+					}
+				}
+			}
+			finally
+			{
+				if (!recorded)
+				{
+					breaker.recordFailure();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the admission controller of the url, or null if the client request sets no limits
+	 */
+	private AdmissionController getAdmissionController(SolrClientRequest clientRequest)
+	{
+		if (clientRequest.getMaxConcurrentUpdates() <= 0 && clientRequest.getMaxDocumentsPerSecond() <= 0 &&
+				clientRequest.getMaxBytesPerSecond() <= 0)
 		{
-			LOG.debug("Removing: " + id);
+			return null;
+		}
+		return _admissionControllers.computeIfAbsent(clientRequest.getSolrUrl(), url ->
+		{
+			LOG.info("Limiting updates to " + url + " to " + clientRequest.getMaxConcurrentUpdates() +
+					" requests in flight, " + clientRequest.getMaxDocumentsPerSecond() + " documents and " +
+					clientRequest.getMaxBytesPerSecond() + " bytes per second (0 is unlimited)");
+			AdmissionController controller = new AdmissionController(url, clientRequest.getMaxConcurrentUpdates(),
+					clientRequest.getMaxDocumentsPerSecond(), clientRequest.getMaxBytesPerSecond());
+			IndexingMetrics.register(controller, "AdmissionControl", url);
+			return controller;
+		});
+	}
+
+	/**
+	 * Waits for the updates streamed for the publication of the request.
+	 * A request without a publication waits for every streaming client of
+	 * the url.
+	 */
+	private void finishStreaming(SolrClientRequest clientRequest) throws SolrServerException, IOException
+	{
+		final String url = clientRequest.getSolrUrl();
+		LOG.debug("Waiting for streamed updates to " + serverKey(clientRequest) + " to finish");
+		List<Throwable> errors = new ArrayList<>();
+		for (Entry<String, SolrClient> servers : _solrServers.entrySet())
+		{
+			if (servers.getValue() instanceof StreamingSolrClient && (servers.getKey().equals(serverKey(clientRequest)) ||
+					clientRequest.getPublicationId() == null && servers.getKey().startsWith(url + "|")))
+			{
+				StreamingSolrClient solrClient = (StreamingSolrClient) servers.getValue();
+				solrClient.blockUntilFinished();
+				errors.addAll(solrClient.drainErrors());
+			}
+		}
+		if (!errors.isEmpty())
+		{
+			StringBuilder messages = new StringBuilder();
+			for (Throwable error : errors)
+			{
+				messages.append("\n").append(error.getMessage());
+			}
+			throw new SolrServerException("Streaming " + errors.size() + " update(s) to " + url + " failed:" + messages, errors.get(0));
+		}
+	}
+
+	private void closeQuietly(String url, SolrClient solrClient)
+	{
+		LOG.info("Closing down " + solrClient.getClass().getSimpleName() + " for url: " + url);
+		try
+		{
+			solrClient.close();
+		}
+		catch (IOException e)
+		{
+			LOG.error("Error closing Solr client for url: " + url, e);
 		}
-		solrClient.deleteById(idList);
-		solrClient.optimize(true, true);
-		UpdateResponse response = solrClient.commit(true, true);
-		return ("Deleting " + ids.size() + " document(s) had the following response: " + response.getResponse());
 	}
 
 	public void destroyServers()
 	{
+		synchronized (this)
+		{
+			if (_binaryExecutor != null)
+			{
+				LOG.info("Shutting down binary dispatch executor");
+				_binaryExecutor.shutdown();
+				_binaryExecutor = null;
+			}
+			if (_deleteExecutor != null)
+			{
+				LOG.info("Shutting down delete dispatch executor");
+				_deleteExecutor.shutdown();
+				_deleteExecutor = null;
+			}
+		}
+		for (Entry<String, SolrClient> servers : _solrServers.entrySet())
+		{
+			if (servers.getValue() instanceof StreamingSolrClient)
+			{
+				LOG.info("Closing down streaming client for url: " + servers.getKey());
+				((StreamingSolrClient) servers.getValue()).shutdownNow();
+			}
+			else
+			{
+				this.closeQuietly(servers.getKey(), servers.getValue());
+			}
+		}
+		for (Entry<String, Http2SolrClient> clients : _http2Clients.entrySet())
+		{
+			this.closeQuietly(clients.getKey(), clients.getValue());
+		}
 		for (Entry<String, HttpClient> clients : _httpClients.entrySet())
 		{
 			HttpClient client = clients.getValue();
@@ -254,6 +1023,17 @@ public enum SolrIndexDispatcher
 				client.getConnectionManager().shutdown();
 			}
 		}
+		// A cloud client is kept by collection name, which a reconfigured indexer is likely to use again
+		_solrServers.clear();
+		_http2Clients.clear();
+		_httpClients.clear();
+		// Permits are sized from the configuration, which a reconfigured indexer may have changed
+		_endpointPermits.clear();
+		_deletePermits.clear();
+		_admissionControllers.clear();
+		// Breakers carry the threshold and open time of the old configuration, and an open circuit should not outlive it
+		_circuitBreakers.clear();
+		IndexingMetrics.unregisterAll();
 	}
 
 }
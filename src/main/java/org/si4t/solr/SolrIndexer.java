@@ -25,22 +25,52 @@ import com.tridion.storage.si4t.SearchIndex;
 import com.tridion.storage.si4t.SearchIndexData;
 import com.tridion.storage.si4t.Utils;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * SolrIndexer.
  * <p>
+ * Pending items are kept per publication, so publications can be
+ * collected and committed concurrently without affecting each other.
+ * <p>
  * TODO: Make this completely transactional as well.
  *
  * @author R.S. Kempees
@@ -48,13 +78,69 @@ import java.util.stream.Collectors;
 public class SolrIndexer implements SearchIndex {
     private static final Logger LOG = LoggerFactory.getLogger(SolrIndexer.class);
 
+    private static final int DEFAULT_BATCH_SIZE = 10;
+
     private String defaultCoreUrl = null;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long maxBatchBytes = 0;
+    private boolean adaptiveBatching = false;
+    private int minBatchSize = 1;
+    private int maxBatchSize = 500;
+    private long minBatchBytes = 65536;
+    private long targetBatchLatency = 1000;
+    private CommitStrategy commitStrategy = CommitStrategy.HARD;
+    private int commitWithin = -1;
+    private boolean optimizeOnRemove = false;
+    private int maxConcurrentBinaryRequests = 4;
+    private SolrClientRequest.ServerMode serverMode = SolrClientRequest.ServerMode.HTTP;
+    private int streamingQueueSize = 100;
+    private int streamingThreads = 2;
+    private SolrClientRequest.Transport transport = SolrClientRequest.Transport.HTTP1;
+    private int maxConnectionsPerRoute = 100;
+    private int maxConnections = 200;
+    private int connectTimeout = 15000;
+    private int socketTimeout = 120000;
+    private int idleConnectionTimeout = 60000;
+    private boolean javabin = true;
+    private List<String> cloudUrls = Collections.emptyList();
+    private int collectionCacheTtl = 60;
+    private int aliveCheckInterval = 60000;
+    private int maxRetries = 3;
+    private long retryBackoff = 500;
+    private long maxRetryBackoff = 10000;
+    private int circuitBreakerThreshold = 5;
+    private long circuitBreakerOpenTime = 30000;
+    private int deleteChunkSize = 1000;
+    private int maxConcurrentDeleteRequests = 2;
+    private int deleteByQueryThreshold = 1000;
+    private String publicationIdField = "publicationid";
+    private int maxConcurrentUpdates = 0;
+    private long maxDocumentsPerSecond = 0;
+    private long maxBytesPerSecond = 0;
+    private int maxPendingItems = 0;
+    private long maxPendingBytes = 0;
 
-    private final ConcurrentHashMap<String, BaseIndexData> itemRemovals = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, SearchIndexData> itemAdds = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, BinaryIndexData> binaryAdds = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, SearchIndexData> itemUpdates = new ConcurrentHashMap<>();
+    private static final String UNKNOWN_PUBLICATION = "";
+
+    private final ConcurrentHashMap<String, IndexRegisters> registers = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, String> solrUrlMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> publicationLocks = new ConcurrentHashMap<>();
+    private final Set<String> flushedPublications = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, AdaptiveBatchSize> batchSizes = new ConcurrentHashMap<>();
+    private IndexJournal journal = null;
+    private ScheduledExecutorService journalReplayer = null;
+    private FingerprintStore fingerprintStore = null;
+    private FieldDigestStore fieldDigestStore = null;
+    private BulkReindex bulkReindex = null;
+    private final ConcurrentHashMap<String, List<FanOutTarget>> fanOutTargets = new ConcurrentHashMap<>();
+    private ExecutorService fanOutExecutor = null;
+    private ScheduledExecutorService fanOutRetrier = null;
+    private BinaryExtractor binaryExtractor = null;
+
+    @FunctionalInterface
+    private interface TransactionSender {
+        void send(String solrUrl) throws SolrServerException, IOException, ParserConfigurationException, SAXException;
+    }
 
 
     private String getSolrUrl(String publicationId) throws ConfigurationException {
@@ -86,10 +172,41 @@ public class SolrIndexer implements SearchIndex {
 
         String requestMode = indexerConfiguration.getAttribute("Mode");
         if (Utils.StringIsNullOrEmpty(requestMode)) {
-            throw new ConfigurationException("Missing Mode attribute. Must either be 'embedded' or 'http'. Exiting");
+            throw new ConfigurationException(
+                    "Missing Mode attribute. Must either be 'embedded', 'http', 'streaming' or 'cloud'. Exiting");
         }
 
-        if (requestMode.equalsIgnoreCase("http")) {
+        if (requestMode.equalsIgnoreCase("http") || requestMode.equalsIgnoreCase("streaming") ||
+                requestMode.equalsIgnoreCase("cloud")) {
+
+            if (requestMode.equalsIgnoreCase("cloud")) {
+                // In cloud mode the Urls collection and the DefaultCoreUrl name collections
+                this.serverMode = SolrClientRequest.ServerMode.CLOUD;
+                String urls = getStringAttribute(indexerConfiguration, "CloudUrls");
+                if (Utils.StringIsNullOrEmpty(urls)) {
+                    throw new ConfigurationException(
+                            "Request mode is set to cloud, but no CloudUrls attribute with the Solr base urls is present");
+                }
+                this.cloudUrls = Arrays.stream(urls.split(","))
+                        .map(String::trim)
+                        .filter(url -> !url.isEmpty())
+                        .collect(Collectors.toList());
+                this.collectionCacheTtl =
+                        (int) getNumericAttribute(indexerConfiguration, "CollectionCacheTtl", this.collectionCacheTtl);
+                LOG.info("Sending updates to the shard leaders of SolrCloud nodes " + this.cloudUrls);
+                this.bulkReindex = new BulkReindex(this::createClientRequest, this::forgetContent);
+                IndexingMetrics.register(this.bulkReindex, "BulkReindex", String.join(",", this.cloudUrls));
+            }
+
+            if (requestMode.equalsIgnoreCase("streaming")) {
+                this.serverMode = SolrClientRequest.ServerMode.STREAMING;
+                this.streamingQueueSize =
+                        (int) getNumericAttribute(indexerConfiguration, "StreamingQueueSize", this.streamingQueueSize);
+                this.streamingThreads =
+                        (int) getNumericAttribute(indexerConfiguration, "StreamingThreads", this.streamingThreads);
+                LOG.info("Streaming updates to Solr with a queue size of " + this.streamingQueueSize + " and " +
+                        this.streamingThreads + " runner threads");
+            }
 
             if (indexerConfiguration.hasChild("Urls") && indexerConfiguration.getChild("Urls") != null) {
                 for (Configuration url : indexerConfiguration.getChild("Urls").getChildren()) {
@@ -121,6 +238,322 @@ public class SolrIndexer implements SearchIndex {
                     "Request mode is set to embedded, but this deprecated feature is now removed. Please use the HTTP" +
                             " option.");
         }
+
+        this.batchSize = (int) getNumericAttribute(indexerConfiguration, "BatchSize", DEFAULT_BATCH_SIZE);
+        if (this.batchSize < 1) {
+            throw new ConfigurationException("BatchSize must be at least 1, but is: " + this.batchSize);
+        }
+        this.maxBatchBytes = getNumericAttribute(indexerConfiguration, "MaxBatchBytes", 0);
+        this.adaptiveBatching = Boolean.parseBoolean(getStringAttribute(indexerConfiguration, "AdaptiveBatching"));
+        if (this.adaptiveBatching) {
+            if (this.serverMode == SolrClientRequest.ServerMode.STREAMING) {
+                throw new ConfigurationException(
+                        "AdaptiveBatching is not supported in the streaming Mode, as requests are sent in the background");
+            }
+            this.minBatchSize = (int) getNumericAttribute(indexerConfiguration, "MinBatchSize", this.minBatchSize);
+            this.maxBatchSize = (int) getNumericAttribute(indexerConfiguration, "MaxBatchSize",
+                    Math.max(this.maxBatchSize, this.batchSize));
+            this.minBatchBytes = getNumericAttribute(indexerConfiguration, "MinBatchBytes", this.minBatchBytes);
+            this.targetBatchLatency =
+                    getNumericAttribute(indexerConfiguration, "TargetBatchLatency", this.targetBatchLatency);
+            if (this.minBatchSize < 1 || this.maxBatchSize < this.minBatchSize) {
+                throw new ConfigurationException("MinBatchSize must be at least 1 and at most MaxBatchSize, but is: " +
+                        this.minBatchSize + ", MaxBatchSize is: " + this.maxBatchSize);
+            }
+            LOG.info("Adapting batches to a target latency of " + this.targetBatchLatency + "ms, starting at " +
+                    this.batchSize + " documents, between " + this.minBatchSize + " and " + this.maxBatchSize +
+                    " documents" + (this.maxBatchBytes > 0 ?
+                    " and between " + this.minBatchBytes + " and " + this.maxBatchBytes + " bytes" : ""));
+        } else {
+            LOG.info("Sending documents in batches of at most " + this.batchSize + " documents" +
+                    (this.maxBatchBytes > 0 ? " and " + this.maxBatchBytes + " bytes" : ""));
+        }
+
+        if (indexerConfiguration.hasAttribute("CommitStrategy")) {
+            String strategy = indexerConfiguration.getAttribute("CommitStrategy");
+            this.commitStrategy = CommitStrategy.fromString(strategy);
+            if (this.commitStrategy == null) {
+                throw new ConfigurationException("Unknown CommitStrategy: " + strategy +
+                        ". Must be one of 'hard', 'soft', 'commitWithin' or 'none'");
+            }
+        }
+        this.commitWithin = (int) getNumericAttribute(indexerConfiguration, "CommitWithin", -1);
+        if (this.commitStrategy == CommitStrategy.COMMIT_WITHIN && this.commitWithin <= 0) {
+            throw new ConfigurationException(
+                    "CommitStrategy is commitWithin, but no valid CommitWithin (in ms) attribute is present");
+        }
+        this.optimizeOnRemove = Boolean.parseBoolean(getStringAttribute(indexerConfiguration, "OptimizeOnRemove"));
+        String transportName = getStringAttribute(indexerConfiguration, "Transport");
+        if (!Utils.StringIsNullOrEmpty(transportName)) {
+            if (transportName.equalsIgnoreCase("http2")) {
+                this.transport = SolrClientRequest.Transport.HTTP2;
+            } else if (!transportName.equalsIgnoreCase("http1")) {
+                throw new ConfigurationException("Unknown Transport: " + transportName + ". Must be 'http1' or 'http2'");
+            }
+        }
+        if (this.transport == SolrClientRequest.Transport.HTTP2 &&
+                this.serverMode != SolrClientRequest.ServerMode.HTTP) {
+            throw new ConfigurationException("The " + requestMode + " Mode requires the http1 Transport");
+        }
+        this.maxConnectionsPerRoute =
+                (int) getNumericAttribute(indexerConfiguration, "MaxConnectionsPerRoute", this.maxConnectionsPerRoute);
+        this.maxConnections = (int) getNumericAttribute(indexerConfiguration, "MaxConnections",
+                Math.max(this.maxConnections, this.maxConnectionsPerRoute));
+        this.connectTimeout = (int) getNumericAttribute(indexerConfiguration, "ConnectTimeout", this.connectTimeout);
+        this.socketTimeout = (int) getNumericAttribute(indexerConfiguration, "SocketTimeout", this.socketTimeout);
+        this.idleConnectionTimeout =
+                (int) getNumericAttribute(indexerConfiguration, "IdleConnectionTimeout", this.idleConnectionTimeout);
+        String requestFormat = getStringAttribute(indexerConfiguration, "RequestFormat");
+        if (!Utils.StringIsNullOrEmpty(requestFormat)) {
+            if (requestFormat.equalsIgnoreCase("xml")) {
+                this.javabin = false;
+            } else if (!requestFormat.equalsIgnoreCase("javabin")) {
+                throw new ConfigurationException("Unknown RequestFormat: " + requestFormat + ". Must be 'javabin' or 'xml'");
+            }
+        }
+        if (this.serverMode == SolrClientRequest.ServerMode.STREAMING && hasMultipleUrls()) {
+            throw new ConfigurationException(
+                    "The streaming Mode supports a single url per publication only. Use the http Mode to load balance");
+        }
+        this.aliveCheckInterval =
+                (int) getNumericAttribute(indexerConfiguration, "AliveCheckInterval", this.aliveCheckInterval);
+        LOG.info("Using " + this.transport + " transport, sending updates as " + (this.javabin ? "javabin" : "XML"));
+
+        int binaryThreads = (int) getNumericAttribute(indexerConfiguration, "BinaryThreads", 4);
+        this.maxConcurrentBinaryRequests =
+                (int) getNumericAttribute(indexerConfiguration, "MaxConcurrentBinaryRequests", binaryThreads);
+        SolrIndexDispatcher.INSTANCE.setBinaryDispatchThreads(binaryThreads);
+        LOG.info("Dispatching binaries with " + binaryThreads + " threads, at most " +
+                this.maxConcurrentBinaryRequests + " concurrent requests per Solr url");
+        String binaryExtraction = getStringAttribute(indexerConfiguration, "BinaryExtraction");
+        if (!Utils.StringIsNullOrEmpty(binaryExtraction)) {
+            if (binaryExtraction.equalsIgnoreCase("client")) {
+                this.configureBinaryExtraction(indexerConfiguration);
+            } else if (!binaryExtraction.equalsIgnoreCase("solr")) {
+                throw new ConfigurationException(
+                        "Unknown BinaryExtraction: " + binaryExtraction + ". Must be 'solr' or 'client'");
+            }
+        }
+
+        this.maxRetries = (int) getNumericAttribute(indexerConfiguration, "MaxRetries", this.maxRetries);
+        this.retryBackoff = getNumericAttribute(indexerConfiguration, "RetryBackoff", this.retryBackoff);
+        this.maxRetryBackoff = getNumericAttribute(indexerConfiguration, "MaxRetryBackoff", this.maxRetryBackoff);
+        this.circuitBreakerThreshold =
+                (int) getNumericAttribute(indexerConfiguration, "CircuitBreakerThreshold", this.circuitBreakerThreshold);
+        this.circuitBreakerOpenTime =
+                getNumericAttribute(indexerConfiguration, "CircuitBreakerOpenTime", this.circuitBreakerOpenTime);
+        LOG.info("Retrying transient failures " + this.maxRetries + " times with a backoff from " +
+                this.retryBackoff + "ms up to " + this.maxRetryBackoff + "ms");
+
+        this.maxConcurrentUpdates =
+                (int) getNumericAttribute(indexerConfiguration, "MaxConcurrentUpdates", this.maxConcurrentUpdates);
+        this.maxDocumentsPerSecond =
+                getNumericAttribute(indexerConfiguration, "MaxDocumentsPerSecond", this.maxDocumentsPerSecond);
+        this.maxBytesPerSecond = getNumericAttribute(indexerConfiguration, "MaxBytesPerSecond", this.maxBytesPerSecond);
+        if (this.maxConcurrentUpdates > 0 || this.maxDocumentsPerSecond > 0 || this.maxBytesPerSecond > 0) {
+            LOG.info("Limiting updates per Solr url to " +
+                    (this.maxConcurrentUpdates > 0 ? this.maxConcurrentUpdates + " requests in flight " : "") +
+                    (this.maxDocumentsPerSecond > 0 ? this.maxDocumentsPerSecond + " documents per second " : "") +
+                    (this.maxBytesPerSecond > 0 ? this.maxBytesPerSecond + " bytes per second" : ""));
+        }
+
+        String journalDirectory = getStringAttribute(indexerConfiguration, "JournalDirectory");
+        if (!Utils.StringIsNullOrEmpty(journalDirectory)) {
+            this.configureJournal(journalDirectory,
+                    getNumericAttribute(indexerConfiguration, "JournalReplayInterval", 30000));
+        }
+
+        if (indexerConfiguration.hasChild("Targets") && indexerConfiguration.getChild("Targets") != null) {
+            this.configureFanOut(indexerConfiguration);
+        }
+
+        this.maxPendingItems = (int) getNumericAttribute(indexerConfiguration, "MaxPendingItems", 0);
+        this.maxPendingBytes = getNumericAttribute(indexerConfiguration, "MaxPendingBytes", 0);
+        if (this.maxPendingItems > 0 || this.maxPendingBytes > 0) {
+            LOG.info("Flushing pending items to Solr without a commit beyond " +
+                    (this.maxPendingItems > 0 ? this.maxPendingItems + " items " : "") +
+                    (this.maxPendingItems > 0 && this.maxPendingBytes > 0 ? "or " : "") +
+                    (this.maxPendingBytes > 0 ? this.maxPendingBytes + " bytes " : "") + "per publication");
+        }
+
+        this.deleteChunkSize = (int) getNumericAttribute(indexerConfiguration, "DeleteChunkSize", this.deleteChunkSize);
+        if (this.deleteChunkSize < 1) {
+            throw new ConfigurationException("DeleteChunkSize must be at least 1, but is: " + this.deleteChunkSize);
+        }
+        this.maxConcurrentDeleteRequests = (int) getNumericAttribute(indexerConfiguration,
+                "MaxConcurrentDeleteRequests", this.maxConcurrentDeleteRequests);
+        SolrIndexDispatcher.INSTANCE.setDeleteDispatchThreads(this.maxConcurrentDeleteRequests);
+        this.deleteByQueryThreshold =
+                (int) getNumericAttribute(indexerConfiguration, "DeleteByQueryThreshold", this.deleteByQueryThreshold);
+        String idField = getStringAttribute(indexerConfiguration, "PublicationIdField");
+        if (!Utils.StringIsNullOrEmpty(idField)) {
+            this.publicationIdField = idField.trim();
+        }
+        LOG.info("Deleting in chunks of " + this.deleteChunkSize + " ids, at most " +
+                this.maxConcurrentDeleteRequests + " concurrent requests per Solr url" +
+                (this.deleteByQueryThreshold > 0 ? ", deleting whole publications of at least " +
+                        this.deleteByQueryThreshold + " documents by query on " + this.publicationIdField : ""));
+
+        long saveInterval = getNumericAttribute(indexerConfiguration, "FingerprintSaveInterval", 60000);
+        String fingerprintFile = getStringAttribute(indexerConfiguration, "FingerprintFile");
+        if (!Utils.StringIsNullOrEmpty(fingerprintFile)) {
+            this.configureFingerprints(fingerprintFile,
+                    (int) getNumericAttribute(indexerConfiguration, "FingerprintMaxEntries", 100000), saveInterval);
+        }
+        if (Boolean.parseBoolean(getStringAttribute(indexerConfiguration, "AtomicUpdates"))) {
+            if (this.serverMode == SolrClientRequest.ServerMode.STREAMING) {
+                throw new ConfigurationException(
+                        "AtomicUpdates are not supported in the streaming Mode, as rejected updates cannot be resent");
+            }
+            String fieldDigestFile = getStringAttribute(indexerConfiguration, "FieldDigestFile");
+            if (Utils.StringIsNullOrEmpty(fieldDigestFile)) {
+                throw new ConfigurationException(
+                        "AtomicUpdates is enabled, but no FieldDigestFile attribute to keep the field digests in is present");
+            }
+            this.configureFieldDigests(fieldDigestFile,
+                    (int) getNumericAttribute(indexerConfiguration, "FieldDigestMaxEntries", 100000), saveInterval);
+        }
+
+        LOG.info("Using commit strategy " + this.commitStrategy +
+                (this.commitWithin > 0 ? " with commitWithin " + this.commitWithin + "ms" : "") +
+                ", optimize on remove: " + this.optimizeOnRemove);
+    }
+
+    private void configureJournal(String journalDirectory, long replayInterval) throws ConfigurationException {
+        try {
+            this.journal = new IndexJournal(new File(journalDirectory));
+        } catch (IOException e) {
+            throw new ConfigurationException("Could not open the index journal in " + journalDirectory + ": " +
+                    e.getMessage());
+        }
+        this.journalReplayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "si4t-solr-journal-replayer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.journalReplayer.scheduleWithFixedDelay(this::replayJournal, replayInterval, replayInterval,
+                TimeUnit.MILLISECONDS);
+        LOG.info("Replaying pending journal entries every " + replayInterval + "ms");
+    }
+
+    private void configureBinaryExtraction(Configuration indexerConfiguration) throws ConfigurationException {
+        try {
+            Class.forName("org.apache.tika.Tika", false, SolrIndexer.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new ConfigurationException(
+                    "BinaryExtraction is set to client, but Tika is not on the class path. Add tika-parsers to the deployer");
+        }
+        int threads = (int) getNumericAttribute(indexerConfiguration, "ExtractionThreads",
+                Runtime.getRuntime().availableProcessors());
+        long timeout = getNumericAttribute(indexerConfiguration, "ExtractionTimeout", 60000);
+        long maxFileSize = getNumericAttribute(indexerConfiguration, "MaxExtractionFileSize", 0);
+        int maxTextLength = (int) getNumericAttribute(indexerConfiguration, "MaxExtractedLength", 0);
+        if (threads < 1 || timeout < 1) {
+            throw new ConfigurationException("ExtractionThreads and ExtractionTimeout must be at least 1, but are: " +
+                    threads + " and " + timeout);
+        }
+        this.binaryExtractor = new BinaryExtractor(threads, timeout, maxFileSize, maxTextLength);
+        LOG.info("Extracting binaries in the deployer with " + threads + " threads, at most " + timeout + "ms each" +
+                (maxFileSize > 0 ? ", up to " + maxFileSize + " bytes" : "") +
+                (maxTextLength > 0 ? ", keeping up to " + maxTextLength + " characters" : ""));
+    }
+
+    private void configureFanOut(Configuration indexerConfiguration) throws ConfigurationException {
+        int maxBacklog = (int) getNumericAttribute(indexerConfiguration, "MaxTargetBacklog", 100);
+        long retryInterval = getNumericAttribute(indexerConfiguration, "TargetRetryInterval", 30000);
+        for (Configuration target : indexerConfiguration.getChild("Targets").getChildren()) {
+            String solrUrl = getStringAttribute(target, "For");
+            String url = getStringAttribute(target, "Value");
+            if (Utils.StringIsNullOrEmpty(solrUrl) || Utils.StringIsNullOrEmpty(url)) {
+                throw new ConfigurationException(
+                        "A Target needs a For attribute with the url it mirrors and a Value attribute with its own url");
+            }
+            String policyName = getStringAttribute(target, "Policy");
+            FanOutTarget.Policy policy = FanOutTarget.Policy.fromString(policyName);
+            if (policy == null) {
+                throw new ConfigurationException("Unknown Policy: " + policyName + ". Must be 'required' or 'bestEffort'");
+            }
+            if (url.trim().equals(solrUrl.trim())) {
+                throw new ConfigurationException("The Target " + url + " mirrors itself");
+            }
+            this.fanOutTargets.computeIfAbsent(solrUrl.trim(), key -> new ArrayList<>())
+                    .add(new FanOutTarget(url.trim(), policy, maxBacklog, this::forgetContent));
+            LOG.info("Sending everything sent to " + solrUrl.trim() + " to " + url.trim() + " as well, policy " + policy);
+        }
+        if (this.fanOutTargets.isEmpty()) {
+            return;
+        }
+
+        this.fanOutExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "si4t-solr-fan-out");
+            t.setDaemon(true);
+            return t;
+        });
+        this.fanOutRetrier = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "si4t-solr-fan-out-retrier");
+            t.setDaemon(true);
+            return t;
+        });
+        this.fanOutRetrier.scheduleWithFixedDelay(this::resendBacklogs, retryInterval, retryInterval,
+                TimeUnit.MILLISECONDS);
+        LOG.info("Resending transactions best effort targets missed every " + retryInterval + "ms, keeping at most " +
+                maxBacklog + " per target");
+    }
+
+    private void configureFingerprints(String fingerprintFile, int maxEntries, long saveInterval)
+            throws ConfigurationException {
+        if (maxEntries < 1) {
+            throw new ConfigurationException("FingerprintMaxEntries must be at least 1, but is: " + maxEntries);
+        }
+        try {
+            this.fingerprintStore = new FingerprintStore(new File(fingerprintFile), maxEntries, saveInterval);
+        } catch (IOException e) {
+            throw new ConfigurationException("Could not open the fingerprint file " + fingerprintFile + ": " +
+                    e.getMessage());
+        }
+        LOG.info("Skipping unchanged content, remembering at most " + maxEntries + " fingerprints in " +
+                fingerprintFile);
+    }
+
+    private void configureFieldDigests(String fieldDigestFile, int maxEntries, long saveInterval)
+            throws ConfigurationException {
+        if (maxEntries < 1) {
+            throw new ConfigurationException("FieldDigestMaxEntries must be at least 1, but is: " + maxEntries);
+        }
+        try {
+            this.fieldDigestStore = new FieldDigestStore(new File(fieldDigestFile), maxEntries, saveInterval);
+        } catch (IOException e) {
+            throw new ConfigurationException("Could not open the field digest file " + fieldDigestFile + ": " +
+                    e.getMessage());
+        }
+        LOG.info("Sending updates as atomic updates, remembering the fields of at most " + maxEntries +
+                " documents in " + fieldDigestFile);
+    }
+
+    private boolean hasMultipleUrls() {
+        return (this.defaultCoreUrl != null && this.defaultCoreUrl.contains(",")) ||
+                this.solrUrlMap.values().stream().anyMatch(url -> url != null && url.contains(","));
+    }
+
+    private static String getStringAttribute(Configuration configuration, String name)
+            throws ConfigurationException {
+        return configuration.hasAttribute(name) ? configuration.getAttribute(name) : null;
+    }
+
+    private static long getNumericAttribute(Configuration configuration, String name, long defaultValue)
+            throws ConfigurationException {
+        if (!configuration.hasAttribute(name)) {
+            return defaultValue;
+        }
+        String value = configuration.getAttribute(name);
+        if (Utils.StringIsNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException("Attribute " + name + " must be numeric, but is: " + value);
+        }
     }
 
     /*
@@ -135,7 +568,8 @@ public class SolrIndexer implements SearchIndex {
             LOG.error("Addition failed. Unique ID is empty");
             return;
         }
-        this.binaryAdds.put(data.getUniqueIndexId(), data);
+        this.register(data, IndexRegisters.estimateSize(data),
+                r -> r.getBinaryAdds().put(data.getUniqueIndexId(), data));
     }
 
     /*
@@ -156,9 +590,8 @@ public class SolrIndexer implements SearchIndex {
             LOG.warn("Item is: " + data.toString());
         }
 
-        if (!this.itemAdds.containsKey(data.getUniqueIndexId())) {
-            this.itemAdds.put(data.getUniqueIndexId(), data);
-        }
+        this.register(data, IndexRegisters.estimateSize(data),
+                r -> r.getItemAdds().putIfAbsent(data.getUniqueIndexId(), data));
     }
 
     /*
@@ -173,7 +606,8 @@ public class SolrIndexer implements SearchIndex {
             LOG.error("Removal addition failed. Unique ID empty");
             return;
         }
-        this.itemRemovals.put(data.getUniqueIndexId(), data);
+        this.register(data, IndexRegisters.REMOVAL_SIZE,
+                r -> r.getItemRemovals().put(data.getUniqueIndexId(), data));
     }
 
     /*
@@ -190,7 +624,8 @@ public class SolrIndexer implements SearchIndex {
             return;
         }
 
-        this.itemRemovals.put(data.getUniqueIndexId(), data);
+        this.register(data, IndexRegisters.REMOVAL_SIZE,
+                r -> r.getItemRemovals().put(data.getUniqueIndexId(), data));
     }
 
     /*
@@ -205,8 +640,87 @@ public class SolrIndexer implements SearchIndex {
             LOG.error("Adding update item failed. Unique ID empty");
             return;
         }
-        this.itemUpdates.put(data.getUniqueIndexId(), data);
+        this.register(data, IndexRegisters.estimateSize(data),
+                r -> r.getItemUpdates().put(data.getUniqueIndexId(), data));
+
+    }
+
+    /**
+     * Registers an item with the pending registers of its publication. Runs
+     * atomically with the swap-out in {@link #takeRegisters(String)}, so an item
+     * either ends up in the transaction being committed or in the next one.
+     * <p>
+     * When the registers of the publication exceed the configured limits,
+     * they are flushed to Solr in the calling thread before it returns.
+     */
+    private void register(BaseIndexData data, long size, Consumer<IndexRegisters> action) throws IndexingException {
+        String publicationId = Utils.StringIsNullOrEmpty(data.getPublicationItemId()) ?
+                UNKNOWN_PUBLICATION : data.getPublicationItemId();
+        IndexRegisters registered = this.registers.compute(publicationId, (key, current) -> {
+            IndexRegisters target = current != null ? current : new IndexRegisters(key);
+            action.accept(target);
+            target.addPendingBytes(size);
+            return target;
+        });
+
+        if ((this.maxPendingItems > 0 && registered.size() >= this.maxPendingItems) ||
+                (this.maxPendingBytes > 0 && registered.getPendingBytes() >= this.maxPendingBytes)) {
+            this.flush(publicationId);
+        }
+    }
+
+    /**
+     * Sends the pending items of a publication to Solr without committing
+     * them, to bound the memory held by the registers. The next commit of the
+     * publication commits them. When sending fails the items are registered
+     * again, so they are retried with the next flush or the commit.
+     */
+    private void flush(String publicationId) throws IndexingException {
+        synchronized (this.lockOf(publicationId)) {
+            IndexRegisters transaction = this.registers.remove(publicationId);
+            if (transaction == null || transaction.isEmpty()) {
+                return;
+            }
+            LOG.info("Flushing " + transaction + " to Solr without a commit");
+            try {
+                this.processTransaction(publicationId, transaction, false, false);
+                this.flushedPublications.add(publicationId);
+                transaction.clear();
+            } catch (Throwable e) {
+                LOG.error("Flushing publication ID " + publicationId + " failed: " + e.getLocalizedMessage(), e);
+                this.registers.merge(publicationId, transaction, (current, failed) -> {
+                    current.merge(failed);
+                    return current;
+                });
+                throw new IndexingException("Flushing publication ID " + publicationId + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Object lockOf(String publicationId) {
+        return this.publicationLocks.computeIfAbsent(publicationId, key -> new Object());
+    }
+
+    /**
+     * Atomically takes the pending registers of a publication. Items without
+     * a publication id are committed along with whichever publication commits first.
+     */
+    private IndexRegisters takeRegisters(String publicationId) {
+        IndexRegisters transaction = this.registers.remove(publicationId);
+        IndexRegisters unknown = UNKNOWN_PUBLICATION.equals(publicationId) ? null :
+                this.registers.remove(UNKNOWN_PUBLICATION);
 
+        if (unknown == null) {
+            return transaction;
+        }
+        if (transaction == null) {
+            return unknown;
+        }
+        transaction.getItemAdds().putAll(unknown.getItemAdds());
+        transaction.getBinaryAdds().putAll(unknown.getBinaryAdds());
+        transaction.getItemRemovals().putAll(unknown.getItemRemovals());
+        transaction.getItemUpdates().putAll(unknown.getItemUpdates());
+        return transaction;
     }
 
     /*
@@ -215,177 +729,1077 @@ public class SolrIndexer implements SearchIndex {
      */
     @Override
     public void commit(String publicationId) throws IndexingException {
+        synchronized (this.lockOf(publicationId)) {
+            IndexRegisters transaction = this.takeRegisters(publicationId);
+            boolean flushed = this.flushedPublications.contains(publicationId) ||
+                    this.flushedPublications.contains(UNKNOWN_PUBLICATION);
+            if (transaction == null) {
+                transaction = new IndexRegisters(publicationId);
+            }
+            if (transaction.isEmpty() && !flushed) {
+                LOG.info("Nothing to commit for publication ID " + publicationId);
+                return;
+            }
+
+            try {
+                debugLogItems(transaction);
+                this.processTransaction(publicationId, transaction, true, flushed);
+                this.flushedPublications.remove(publicationId);
+                this.flushedPublications.remove(UNKNOWN_PUBLICATION);
+
+            } catch (SolrServerException e) {
+                LOG.error(e.getLocalizedMessage(), e);
+                throw new IndexingException("Solr Server Exception: " + e.getMessage());
+            } catch (IOException e) {
+                LOG.error(e.getLocalizedMessage(), e);
+                throw new IndexingException("IO Exception: " + e.getMessage());
+            } catch (ParserConfigurationException e) {
+                LOG.error(e.getLocalizedMessage(), e);
+                throw new IndexingException("ParserConfigurationException: " + e.getMessage());
+            } catch (SAXException e) {
+                LOG.error(e.getLocalizedMessage(), e);
+                throw new IndexingException("SAXException:" + e.getMessage());
+            } catch (IndexingException e) {
+                throw e;
+            } catch (Throwable e) {
+                LOG.error("Unexpected exception: " + e.getLocalizedMessage(), e);
+                throw new IndexingException("Unexpected exception:" + e.getMessage());
+            } finally {
+                LOG.info("Clearing out registers of publication ID " + publicationId);
+                transaction.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends a transaction to Solr, through the journal if it is enabled.
+     *
+     * While the alias of the publication is being bulk reindexed, the
+     * transaction is sent to the staging collection instead.
+     *
+     * @param commit  false to send the items without committing them
+     * @param flushed true if items of the publication were flushed before, which
+     *                then need a commit even if nothing else is left to send
+     */
+    private void processTransaction(String publicationId, IndexRegisters transaction, boolean commit,
+                                    boolean flushed)
+            throws ConfigurationException, SolrServerException, IOException, ParserConfigurationException,
+            SAXException, IndexingException {
+        String solrUrl = getSolrUrl(publicationId);
+        LOG.debug("found solr url " + solrUrl + " for publication ID " + publicationId);
+        if (this.bulkReindex == null) {
+            this.processTransaction(publicationId, transaction, commit, flushed, solrUrl, solrUrl);
+            return;
+        }
+        Lock lock = this.bulkReindex.transactionLock();
+        lock.lock();
         try {
+            this.processTransaction(publicationId, transaction, commit, flushed, solrUrl,
+                    this.bulkReindex.resolve(solrUrl));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Items are only skipped, and updates only sent as atomic updates, as far
+     * as that holds for the url of the publication and all its fan out targets,
+     * since they all get the same transaction.
+     *
+     * @param solrUrl   the url of the publication, which the fingerprints are kept for
+     * @param targetUrl the url to send the transaction to
+     */
+    private void processTransaction(String publicationId, IndexRegisters transaction, boolean commit,
+                                    boolean flushed, String solrUrl, String targetUrl)
+            throws SolrServerException, IOException, ParserConfigurationException, SAXException, IndexingException {
+        IndexingMetrics.of(targetUrl).recordTransaction(transaction.size(), transaction.getPendingBytes());
+
+        Map<String, Long> fingerprints = Collections.emptyMap();
+        if (this.fingerprintStore != null) {
+            fingerprints = this.skipUnchanged(transaction, this.urlsOf(solrUrl));
+            if (transaction.isEmpty() && !flushed) {
+                LOG.info("Content of publication ID " + publicationId + " is unchanged, nothing to commit");
+                return;
+            }
+        }
 
-            String solrUrl = getSolrUrl(publicationId);
-            LOG.debug("found solr url " + solrUrl + " for publication ID " + publicationId);
-            debugLogItems();
+        Map<String, ArrayList<String>> partialUpdates = Collections.emptyMap();
+        Map<String, Map<String, Long>> fieldDigests = new HashMap<>();
+        if (this.fieldDigestStore != null) {
+            partialUpdates = this.preparePartialUpdates(transaction, this.urlsOf(solrUrl), fieldDigests);
+            if (transaction.isEmpty() && !flushed) {
+                LOG.info("Fields of publication ID " + publicationId + " are unchanged, nothing to commit");
+                return;
+            }
+        }
 
-            this.commitAddContentToSolr(this.itemAdds, solrUrl);
-            this.commitAddBinariesToSolr(solrUrl);
-            this.removeItemsFromSolr(solrUrl);
-            this.processItemUpdates(solrUrl);
+        if (this.journal != null) {
+            this.commitJournaled(publicationId, transaction, partialUpdates, fingerprints, fieldDigests, targetUrl,
+                    commit);
+            return;
+        }
 
-        } catch (SolrServerException e) {
-            LOG.error(e.getLocalizedMessage(), e);
-            throw new IndexingException("Solr Server Exception: " + e.getMessage());
-        } catch (IOException e) {
-            LOG.error(e.getLocalizedMessage(), e);
-            throw new IndexingException("IO Exception: " + e.getMessage());
-        } catch (ParserConfigurationException e) {
-            LOG.error(e.getLocalizedMessage(), e);
-            throw new IndexingException("ParserConfigurationException: " + e.getMessage());
-        } catch (SAXException e) {
-            LOG.error(e.getLocalizedMessage(), e);
-            throw new IndexingException("SAXException:" + e.getMessage());
+        Map<String, BinaryDocument> binaries = binariesOf(transaction.getBinaryAdds());
+        Iterable<SolrInputDocument> extracted = this.extract(binaries, targetUrl);
+        Map<String, ArrayList<String>> atomicUpdates = partialUpdates;
+        Map<String, Long> sentFingerprints = fingerprints;
+        boolean removalsOnly = transaction.getItemAdds().isEmpty() && binaries.isEmpty() &&
+                transaction.getItemUpdates().isEmpty();
+        JournalEntry[] entry = new JournalEntry[1];
+        this.fanOut(solrUrl, targetUrl,
+                url -> this.dispatchTransaction(documentsOf(transaction.getItemAdds(), url), binaries, extracted,
+                        transaction.getItemRemovals().keySet(), documentsOf(transaction.getItemUpdates(), url),
+                        atomicUpdates, removalsOnly, publicationId, url, commit),
+                () -> entry[0] != null ? entry[0] : (entry[0] = toEntry(publicationId, transaction, atomicUpdates,
+                        sentFingerprints, fieldDigests, targetUrl, commit)),
+                fingerprints, fieldDigests);
+    }
+
+    /**
+     * @return the urls a transaction of the url is sent to: the url itself and its fan out targets
+     */
+    private List<String> urlsOf(String solrUrl) {
+        List<FanOutTarget> targets = this.fanOutTargets.get(solrUrl.trim());
+        if (targets == null) {
+            return Collections.singletonList(solrUrl);
+        }
+        List<String> urls = new ArrayList<>(targets.size() + 1);
+        urls.add(solrUrl);
+        for (FanOutTarget target : targets) {
+            urls.add(target.getUrl());
+        }
+        return urls;
+    }
+
+    /**
+     * Records the fingerprints and field digests of a transaction the Solr url acknowledged.
+     *
+     * @param fingerprints the fingerprints of the sent items, by id
+     * @param fieldDigests the field digests of the sent documents, by id
+     */
+    private void acknowledge(String solrUrl, Map<String, Long> fingerprints,
+                             Map<String, Map<String, Long>> fieldDigests) {
+        if (this.fingerprintStore != null && !fingerprints.isEmpty()) {
+            Map<String, Long> keyed = new HashMap<>();
+            fingerprints.forEach((id, fingerprint) -> keyed.put(DigestStore.key(solrUrl, id), fingerprint));
+            this.fingerprintStore.putAll(keyed);
+            this.fingerprintStore.saveIfDue();
+        }
+        if (this.fieldDigestStore != null && !fieldDigests.isEmpty()) {
+            Map<String, Map<String, Long>> keyed = new HashMap<>();
+            fieldDigests.forEach((id, digests) -> keyed.put(DigestStore.key(solrUrl, id), digests));
+            this.fieldDigestStore.putAll(keyed);
+            this.fieldDigestStore.saveIfDue();
+        }
+    }
+
+    /**
+     * Forgets the fingerprints and field digests of the items of a transaction
+     * Solr did not apply, for the url and its fan out targets, so they are sent
+     * in full the next time.
+     */
+    private void forget(String solrUrl, JournalEntry entry) {
+        for (String url : this.urlsOf(solrUrl)) {
+            if (this.fingerprintStore != null) {
+                entry.getFingerprints().keySet().forEach(id -> this.fingerprintStore.remove(DigestStore.key(url, id)));
+            }
+            if (this.fieldDigestStore != null) {
+                entry.getFieldDigests().keySet().forEach(id -> this.fieldDigestStore.remove(DigestStore.key(url, id)));
+            }
+        }
+    }
+
+    /**
+     * Drops the adds, binaries and updates whose content did not change since
+     * it was last sent to each of the Solr urls, and forgets the fingerprints
+     * of removed items.
+     *
+     * @return the fingerprints of the remaining items by id, to be recorded
+     * for each url once it acknowledged the transaction
+     */
+    private Map<String, Long> skipUnchanged(IndexRegisters transaction, List<String> solrUrls) {
+        for (String id : transaction.getItemRemovals().keySet()) {
+            for (String solrUrl : solrUrls) {
+                this.fingerprintStore.remove(DigestStore.key(solrUrl, id));
+            }
+        }
+
+        Map<String, Long> fingerprints = new HashMap<>();
+        Set<String> removals = transaction.getItemRemovals().keySet();
+        int skipped = this.skipUnchanged(transaction.getItemAdds(), FingerprintStore::fingerprint, removals,
+                solrUrls, fingerprints);
+        skipped += this.skipUnchanged(transaction.getItemUpdates(), FingerprintStore::fingerprint, removals,
+                solrUrls, fingerprints);
+        skipped += this.skipUnchanged(transaction.getBinaryAdds(),
+                data -> FingerprintStore.fingerprint(BinaryDocument.from(data)), removals, solrUrls, fingerprints);
+
+        if (skipped > 0) {
+            LOG.info("Skipped " + skipped + " unchanged items of publication ID " + transaction.getPublicationId());
+        }
+        return fingerprints;
+    }
+
+    private <T> int skipUnchanged(Map<String, T> items, ToLongFunction<T> fingerprinter, Set<String> removals,
+                                  List<String> solrUrls, Map<String, Long> fingerprints) {
+        int skipped = 0;
+        Iterator<Entry<String, T>> iterator = items.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<String, T> item = iterator.next();
+            if (removals.contains(item.getKey())) {
+                // Also removed in this transaction, so never skipped nor remembered
+                continue;
+            }
+            long fingerprint = fingerprinter.applyAsLong(item.getValue());
+            if (this.isUnchanged(solrUrls, item.getKey(), fingerprint)) {
+                LOG.debug("Skipping unchanged item " + item.getKey());
+                iterator.remove();
+                skipped++;
+            } else {
+                fingerprints.put(item.getKey(), fingerprint);
+            }
+        }
+        return skipped;
+    }
+
+    private boolean isUnchanged(List<String> solrUrls, String id, long fingerprint) {
+        for (String solrUrl : solrUrls) {
+            if (!this.fingerprintStore.isUnchanged(DigestStore.key(solrUrl, id), fingerprint)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Works out which fields of the updates changed since they were last sent
+     * to each of the Solr urls. Updates of documents with known field digests
+     * for every url are sent as atomic updates of the fields changed for any of
+     * them; updates without any changed field are dropped.
+     *
+     * @param fieldDigests receives the field digests of all adds and updates by id,
+     *                     to be recorded for each url once it acknowledged the transaction
+     * @return the changed fields of each update to be sent as an atomic update, by id
+     */
+    private Map<String, ArrayList<String>> preparePartialUpdates(IndexRegisters transaction, List<String> solrUrls,
+                                                                 Map<String, Map<String, Long>> fieldDigests) {
+        Set<String> removals = transaction.getItemRemovals().keySet();
+        for (String id : removals) {
+            for (String solrUrl : solrUrls) {
+                this.fieldDigestStore.remove(DigestStore.key(solrUrl, id));
+            }
+        }
+        for (Entry<String, SearchIndexData> item : transaction.getItemAdds().entrySet()) {
+            if (!removals.contains(item.getKey())) {
+                fieldDigests.put(item.getKey(), FieldDigestStore.digestFields(item.getValue()));
+            }
+        }
+
+        Map<String, ArrayList<String>> partialUpdates = new HashMap<>();
+        Iterator<Entry<String, SearchIndexData>> iterator = transaction.getItemUpdates().entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<String, SearchIndexData> item = iterator.next();
+            if (removals.contains(item.getKey()) || transaction.getItemAdds().containsKey(item.getKey())) {
+                continue;
+            }
+            Map<String, Long> current = FieldDigestStore.digestFields(item.getValue());
+            fieldDigests.put(item.getKey(), current);
+            Set<String> changed = this.changedFields(solrUrls, item.getKey(), current);
+            if (changed == null) {
+                continue;
+            }
+            if (changed.isEmpty()) {
+                LOG.debug("Skipping update without changed fields of " + item.getKey());
+                iterator.remove();
+            } else {
+                partialUpdates.put(item.getKey(), new ArrayList<>(changed));
+            }
+        }
+
+        if (!partialUpdates.isEmpty()) {
+            LOG.info("Sending " + partialUpdates.size() + " of " + transaction.getItemUpdates().size() +
+                    " updates of publication ID " + transaction.getPublicationId() + " as atomic updates");
+        }
+        return partialUpdates;
+    }
+
+    /**
+     * @return the fields changed for any of the urls, or null if the fields
+     * last sent to one of them are not known
+     */
+    private Set<String> changedFields(List<String> solrUrls, String id, Map<String, Long> current) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (String solrUrl : solrUrls) {
+            Map<String, Long> previous = this.fieldDigestStore.get(DigestStore.key(solrUrl, id));
+            if (previous == null) {
+                return null;
+            }
+            changed.addAll(FieldDigestStore.changedFields(previous, current));
+        }
+        return changed;
+    }
+
+    /**
+     * Writes the transaction to the journal before dispatching it. Once the
+     * journal write is durable a transient failure no longer fails the commit:
+     * the entry stays in the journal and is replayed when Solr is reachable again.
+     * A permanent failure sets the entry aside and fails the commit.
+     */
+    private void commitJournaled(String publicationId, IndexRegisters transaction,
+                                 Map<String, ArrayList<String>> partialUpdates, Map<String, Long> fingerprints,
+                                 Map<String, Map<String, Long>> fieldDigests, String solrUrl, boolean commit)
+            throws IOException, IndexingException {
+        JournalEntry entry = toEntry(publicationId, transaction, partialUpdates, fingerprints, fieldDigests, solrUrl,
+                commit);
+
+        File file = this.journal.write(entry);
+
+        if (this.journal.hasOlderPending(file)) {
+            LOG.info("Older journal entries of publication ID " + publicationId + " are pending, leaving " +
+                    file.getName() + " to the journal replayer");
+            this.journal.release(file);
+            this.journalReplayer.execute(this::replayJournal);
+            return;
+        }
+
+        try {
+            this.dispatchEntry(entry);
+            this.journal.complete(file);
+        } catch (Exception e) {
+            if (!RetryPolicy.isTransient(e)) {
+                this.reject(entry, file, e);
+                throw new IndexingException("Publication ID " + publicationId + " could not be indexed, journal entry " +
+                        file.getName() + " was set aside: " + e.getMessage(), e);
+            }
+            LOG.warn("Dispatching publication ID " + publicationId + " failed, journal entry " + file.getName() +
+                    " will be replayed: " + e.getMessage(), e);
+            this.journal.release(file);
+        }
+    }
+
+    /**
+     * Sets aside a journal entry which failed for good, e.g. because Solr
+     * rejected it or a binary has no content. It would fail the same way on
+     * every replay and hold up the entries after it.
+     */
+    private void reject(JournalEntry entry, File file, Exception e) throws IOException {
+        LOG.error("Journal entry " + file.getName() + " of publication ID " + entry.getPublicationId() +
+                " cannot be indexed, setting it aside. Its items need to be republished: " +
+                e.getMessage(), e);
+        try {
+            this.forget(getSolrUrl(entry.getPublicationId()), entry);
+        } catch (ConfigurationException ce) {
+            LOG.warn("No Solr url for publication ID " + entry.getPublicationId() + ", nothing to forget: " +
+                    ce.getMessage());
+        }
+        this.journal.quarantine(file);
+    }
+
+    private static JournalEntry toEntry(String publicationId, IndexRegisters transaction,
+                                        Map<String, ArrayList<String>> partialUpdates, Map<String, Long> fingerprints,
+                                        Map<String, Map<String, Long>> fieldDigests, String solrUrl, boolean commit) {
+        JournalEntry entry = new JournalEntry(publicationId);
+        entry.setCommit(commit);
+        documentsOf(transaction.getItemAdds(), solrUrl).forEach(entry.getAdds()::add);
+        documentsOf(transaction.getItemUpdates(), solrUrl).forEach(entry.getUpdates()::add);
+        entry.getBinaries().putAll(binariesOf(transaction.getBinaryAdds()));
+        entry.getRemovals().addAll(transaction.getItemRemovals().keySet());
+        entry.getPartialUpdates().putAll(partialUpdates);
+        entry.getFingerprints().putAll(fingerprints);
+        entry.getFieldDigests().putAll(fieldDigests);
+        return entry;
+    }
+
+    /**
+     * Dispatches the pending journal entries, oldest first. Entries of a
+     * publication are replayed in order: after a failure the remaining entries
+     * of that publication wait for the next run.
+     */
+    private void replayJournal() {
+        try {
+            Set<String> blocked = new HashSet<>();
+            for (File file : this.journal.pending()) {
+                String publication = IndexJournal.publicationOf(file);
+                if (blocked.contains(publication)) {
+                    continue;
+                }
+                if (!this.journal.claim(file)) {
+                    blocked.add(publication);
+                    continue;
+                }
+
+                JournalEntry entry;
+                try {
+                    entry = this.journal.read(file);
+                } catch (IOException e) {
+                    LOG.error("Could not read journal entry " + file.getName() + ", setting it aside", e);
+                    this.journal.quarantine(file);
+                    continue;
+                }
+
+                try {
+                    LOG.info("Replaying journal entry " + file.getName());
+                    this.dispatchEntry(entry);
+                    this.journal.complete(file);
+                } catch (Exception e) {
+                    if (!RetryPolicy.isTransient(e)) {
+                        this.reject(entry, file, e);
+                        continue;
+                    }
+                    LOG.warn("Replaying journal entry " + file.getName() + " failed, retrying later: " + e.getMessage());
+                    this.journal.release(file);
+                    blocked.add(publication);
+                }
+            }
         } catch (Throwable e) {
-            LOG.error("Unexpected exception: " + e.getLocalizedMessage(), e);
-            throw new IndexingException("Unexpected exception:" + e.getMessage());
+            LOG.error("Unexpected exception replaying the index journal: " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    private void dispatchEntry(JournalEntry entry)
+            throws ConfigurationException, SolrServerException, IOException, ParserConfigurationException,
+            SAXException {
+        String solrUrl = getSolrUrl(entry.getPublicationId());
+        if (this.bulkReindex == null) {
+            Iterable<SolrInputDocument> extracted = this.extract(entry.getBinaries(), solrUrl);
+            this.fanOut(solrUrl, solrUrl, url -> this.dispatchEntry(entry, extracted, url), () -> entry,
+                    entry.getFingerprints(), entry.getFieldDigests());
+            return;
+        }
+        Lock lock = this.bulkReindex.transactionLock();
+        lock.lock();
+        try {
+            String targetUrl = this.bulkReindex.resolve(solrUrl);
+            Iterable<SolrInputDocument> extracted = this.extract(entry.getBinaries(), targetUrl);
+            this.fanOut(solrUrl, targetUrl, url -> this.dispatchEntry(entry, extracted, url), () -> entry,
+                    entry.getFingerprints(), entry.getFieldDigests());
         } finally {
-            LOG.info("Clearing out registers.");
-            this.clearRegisters();
+            lock.unlock();
+        }
+    }
+
+    private void dispatchEntry(JournalEntry entry, Iterable<SolrInputDocument> extracted, String solrUrl)
+            throws SolrServerException, IOException, ParserConfigurationException, SAXException {
+        boolean removalsOnly = entry.getAdds().isEmpty() && entry.getBinaries().isEmpty() &&
+                entry.getUpdates().isEmpty();
+        this.dispatchTransaction(entry.getAdds(), entry.getBinaries(), extracted, entry.getRemovals(),
+                entry.getUpdates(), entry.getPartialUpdates(), removalsOnly, entry.getPublicationId(), solrUrl,
+                entry.isCommit());
+    }
+
+    /**
+     * Starts extracting the binaries of a transaction, once for all the urls
+     * it is sent to.
+     *
+     * @return the extracted documents, or null if the binaries are sent to the extract handler of Solr
+     */
+    private Iterable<SolrInputDocument> extract(Map<String, BinaryDocument> binaries, String solrUrl) {
+        if (this.binaryExtractor == null || binaries.isEmpty()) {
+            return null;
+        }
+        return this.binaryExtractor.extract(binaries, solrUrl);
+    }
+
+    /**
+     * Sends a transaction to a url and, concurrently, to the fan out targets
+     * configured for the url, so it takes about as long as the slowest of them.
+     * A failing required target fails the transaction; a failing best effort
+     * target gets the transaction in its backlog. A best effort target which
+     * already has a backlog gets the transaction in its backlog right away, to
+     * keep the order of its transactions.
+     *
+     * @param solrUrl   the url of the publication, which the targets are configured for
+     * @param targetUrl the url to send the transaction to
+     * @param entry     the transaction as a journal entry, built only if a best effort target needs it
+     * @param fingerprints the fingerprints of the sent items, recorded for each url which acknowledged them
+     * @param fieldDigests the field digests of the sent documents, recorded for each url which acknowledged them
+     */
+    private void fanOut(String solrUrl, String targetUrl, TransactionSender sender, Supplier<JournalEntry> entry,
+                        Map<String, Long> fingerprints, Map<String, Map<String, Long>> fieldDigests)
+            throws SolrServerException, IOException, ParserConfigurationException, SAXException {
+        List<FanOutTarget> targets = this.fanOutTargets.get(solrUrl.trim());
+        if (targets == null) {
+            sender.send(targetUrl);
+            this.acknowledge(solrUrl, fingerprints, fieldDigests);
+            return;
+        }
+
+        Map<FanOutTarget, Future<Void>> results = new LinkedHashMap<>();
+        for (FanOutTarget target : targets) {
+            if (!target.isRequired() && target.hasBacklog()) {
+                target.enqueue(entry.get());
+                continue;
+            }
+            String url = this.resolve(target.getUrl());
+            results.put(target, this.fanOutExecutor.submit(() -> {
+                sender.send(url);
+                this.acknowledge(target.getUrl(), fingerprints, fieldDigests);
+                return null;
+            }));
+        }
+
+        SolrServerException failure;
+        try {
+            sender.send(targetUrl);
+            this.acknowledge(solrUrl, fingerprints, fieldDigests);
+        } finally {
+            failure = this.awaitFanOut(results, entry);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the failure of the first failing required target, or null if they all succeeded
+     */
+    private SolrServerException awaitFanOut(Map<FanOutTarget, Future<Void>> results, Supplier<JournalEntry> entry) {
+        SolrServerException failure = null;
+        for (Map.Entry<FanOutTarget, Future<Void>> result : results.entrySet()) {
+            FanOutTarget target = result.getKey();
+            try {
+                result.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new SolrServerException("Interrupted while waiting for the fan out targets", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (target.isRequired()) {
+                    LOG.error("Sending to required target " + target.getUrl() + " failed: " + cause.getMessage(), cause);
+                    if (failure == null) {
+                        failure = new SolrServerException("Sending to required target " + target.getUrl() +
+                                " failed: " + cause.getMessage(), cause);
+                    }
+                } else {
+                    LOG.warn("Sending to best effort target " + target.getUrl() + " failed, resending later: " +
+                            cause.getMessage());
+                    target.enqueue(entry.get());
+                }
+            }
+        }
+        return failure;
+    }
+
+    private void resendBacklogs() {
+        try {
+            for (List<FanOutTarget> targets : this.fanOutTargets.values()) {
+                for (FanOutTarget target : targets) {
+                    if (target.hasBacklog()) {
+                        target.resend(this::resendEntry);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            LOG.error("Unexpected exception resending to fan out targets: " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    private void resendEntry(JournalEntry entry, String url)
+            throws SolrServerException, IOException, ParserConfigurationException, SAXException {
+        if (this.bulkReindex == null) {
+            this.dispatchEntry(entry, this.extract(entry.getBinaries(), url), url);
+        } else {
+            Lock lock = this.bulkReindex.transactionLock();
+            lock.lock();
+            try {
+                String targetUrl = this.bulkReindex.resolve(url);
+                this.dispatchEntry(entry, this.extract(entry.getBinaries(), targetUrl), targetUrl);
+            } finally {
+                lock.unlock();
+            }
+        }
+        this.acknowledge(url, entry.getFingerprints(), entry.getFieldDigests());
+    }
+
+    private String resolve(String solrUrl) {
+        return this.bulkReindex == null ? solrUrl : this.bulkReindex.resolve(solrUrl);
+    }
+
+    /**
+     * @param extracted    the documents extracted from the binaries, or null to send
+     *                     the binaries to the extract handler of Solr
+     * @param removalsOnly true if the transaction has nothing but removals, which may then
+     *                     be deleted by query. Passed in rather than probed from the
+     *                     documents, which are built while iterating them.
+     */
+    private void dispatchTransaction(Iterable<SolrInputDocument> adds, Map<String, BinaryDocument> binaries,
+                                     Iterable<SolrInputDocument> extracted, Set<String> removals, Iterable<SolrInputDocument> updates,
+                                     Map<String, ArrayList<String>> partialUpdates, boolean removalsOnly, String publicationId,
+                                     String solrUrl, boolean commit)
+            throws SolrServerException, IOException, ParserConfigurationException, SAXException {
+        // A staging collection is committed once, when its bulk reindex is finished
+        boolean staging = this.isStaging(solrUrl);
+        boolean optimize = this.optimizeOnRemove && !removals.isEmpty() && !staging;
+
+        if (extracted != null) {
+            // Extracted in the background while the other documents are sent, then batched along with them
+            try {
+                this.commitAddContentToSolr(concat(adds, extracted), publicationId, solrUrl);
+            } catch (UncheckedIOException e) {
+                // Only an interrupted extraction, which is worth replaying
+                throw e.getCause();
+            }
+        } else {
+            this.commitAddContentToSolr(adds, publicationId, solrUrl);
+            this.commitAddBinariesToSolr(binaries, publicationId, solrUrl);
+        }
+        this.removeItemsFromSolr(removals, removalsOnly, publicationId, solrUrl);
+        this.processItemUpdates(updates, partialUpdates, publicationId, solrUrl);
+
+        if (commit && !staging) {
+            SolrClientRequest clientRequest = this.createClientRequest(solrUrl, publicationId);
+            clientRequest.setOptimize(optimize);
+            LOG.info(SolrIndexDispatcher.INSTANCE.commit(clientRequest));
+        }
+    }
+
+    /**
+     * Documents are constructed lazily while iterating, so batches can be
+     * dispatched while the remaining documents are still being built. The
+     * construction time of each document is recorded in the metrics of the url.
+     */
+    private static Iterable<SolrInputDocument> documentsOf(Map<String, SearchIndexData> items, String solrUrl) {
+        IndexingMetrics metrics = IndexingMetrics.of(solrUrl);
+        return () -> items.values().stream().map(data -> {
+            long start = System.nanoTime();
+            SolrInputDocument document = constructInputDocument(data);
+            metrics.record(IndexingMetrics.Operation.CONSTRUCT, 1, System.nanoTime() - start);
+            return document;
+        }).iterator();
+    }
+
+    /**
+     * Iterates the first documents, then the second, both lazily.
+     */
+    private static Iterable<SolrInputDocument> concat(Iterable<SolrInputDocument> first,
+                                                      Iterable<SolrInputDocument> second) {
+        return () -> Stream.concat(StreamSupport.stream(first.spliterator(), false),
+                StreamSupport.stream(second.spliterator(), false)).iterator();
+    }
+
+    private static LinkedHashMap<String, BinaryDocument> binariesOf(Map<String, BinaryIndexData> binaries) {
+        LinkedHashMap<String, BinaryDocument> documents = new LinkedHashMap<>();
+        for (Map.Entry<String, BinaryIndexData> entry : binaries.entrySet()) {
+            documents.put(entry.getKey(), BinaryDocument.from(entry.getValue()));
+        }
+        return documents;
+    }
+
+    private boolean isStaging(String solrUrl) {
+        return this.bulkReindex != null && this.bulkReindex.isStaging(solrUrl);
+    }
+
+    /**
+     * Forgets the fingerprints and field digests of everything sent to a url.
+     */
+    private void forgetContent(String solrUrl) {
+        if (this.fingerprintStore != null) {
+            this.fingerprintStore.removeUrl(solrUrl);
+        }
+        if (this.fieldDigestStore != null) {
+            this.fieldDigestStore.removeUrl(solrUrl);
         }
     }
 
-    private void debugLogItems() {
+    private SolrClientRequest createClientRequest(String solrUrl) {
+        return this.createClientRequest(solrUrl, null);
+    }
+
+    private SolrClientRequest createClientRequest(String solrUrl, String publicationId) {
+        SolrClientRequest clientRequest = new SolrClientRequest(solrUrl);
+        clientRequest.setPublicationId(publicationId);
+        boolean staging = this.isStaging(solrUrl);
+        clientRequest.setCommitStrategy(staging ? CommitStrategy.NONE : this.commitStrategy);
+        clientRequest.setCommitWithin(staging ? -1 : this.commitWithin);
+        clientRequest.setMaxConcurrentBinaryRequests(this.maxConcurrentBinaryRequests);
+        clientRequest.setDeleteChunkSize(this.deleteChunkSize);
+        clientRequest.setMaxConcurrentDeleteRequests(this.maxConcurrentDeleteRequests);
+        clientRequest.setMaxConcurrentUpdates(this.maxConcurrentUpdates);
+        clientRequest.setMaxDocumentsPerSecond(this.maxDocumentsPerSecond);
+        clientRequest.setMaxBytesPerSecond(this.maxBytesPerSecond);
+        clientRequest.setServerMode(this.serverMode);
+        clientRequest.setStreamingQueueSize(this.streamingQueueSize);
+        clientRequest.setStreamingThreads(this.streamingThreads);
+        clientRequest.setTransport(this.transport);
+        clientRequest.setMaxConnectionsPerRoute(this.maxConnectionsPerRoute);
+        clientRequest.setMaxConnections(this.maxConnections);
+        clientRequest.setConnectTimeout(this.connectTimeout);
+        clientRequest.setSocketTimeout(this.socketTimeout);
+        clientRequest.setIdleConnectionTimeout(this.idleConnectionTimeout);
+        clientRequest.setJavabin(this.javabin);
+        clientRequest.setCloudUrls(this.cloudUrls);
+        clientRequest.setCollectionCacheTtl(this.collectionCacheTtl);
+        clientRequest.setAliveCheckInterval(this.aliveCheckInterval);
+        clientRequest.setMaxRetries(this.maxRetries);
+        clientRequest.setRetryBackoff(this.retryBackoff);
+        clientRequest.setMaxRetryBackoff(this.maxRetryBackoff);
+        clientRequest.setCircuitBreakerThreshold(this.circuitBreakerThreshold);
+        clientRequest.setCircuitBreakerOpenTime(this.circuitBreakerOpenTime);
+        return clientRequest;
+    }
+
+    private void debugLogItems(IndexRegisters transaction) {
 
         if (LOG.isDebugEnabled()) {
 
-            String itemsInItemAdds = itemAdds.entrySet().stream()
+            String itemsInItemAdds = transaction.getItemAdds().entrySet().stream()
                     .map(entry -> "key: " + entry.getKey() + ", val:" + entry.getValue().getUniqueIndexId())
                     .collect(Collectors.joining(","));
 
             LOG.debug("itemsToAdd contains: {}", itemsInItemAdds);
 
-            String itemsInItemUpdates = itemUpdates.entrySet().stream()
+            String itemsInItemUpdates = transaction.getItemUpdates().entrySet().stream()
                     .map(entry -> "key: " + entry.getKey() + ", val:" + entry.getValue().getUniqueIndexId())
                     .collect(Collectors.joining(","));
 
             LOG.debug("itemUpdates contains: {}", itemsInItemUpdates);
 
-            String itemsInBinaryAdds = binaryAdds.entrySet().stream()
+            String itemsInBinaryAdds = transaction.getBinaryAdds().entrySet().stream()
                     .map(entry -> "key: " + entry.getKey() + ", val:" + entry.getValue().getUniqueIndexId())
                     .collect(Collectors.joining(","));
 
             LOG.debug("binaryAdds contains: {}", itemsInBinaryAdds);
 
-            String itemsInItemRemovals = itemRemovals.entrySet().stream()
+            String itemsInItemRemovals = transaction.getItemRemovals().entrySet().stream()
                     .map(entry -> "key: " + entry.getKey() + ", val:" + entry.getValue().getUniqueIndexId())
                     .collect(Collectors.joining(","));
 
-            LOG.debug("binaryAdds contains: {}", itemsInItemRemovals);
+            LOG.debug("itemRemovals contains: {}", itemsInItemRemovals);
 
         }
     }
 
-    private void clearRegisters() {
-        itemAdds.clear();
-        LOG.debug("cleared item register");
-        binaryAdds.clear();
-        LOG.debug("cleared binary register");
-        itemRemovals.clear();
-        LOG.debug("cleared removal register");
-        itemUpdates.clear();
-        LOG.debug("cleared update register");
-    }
-
     /**
      * Process item updates.
      * <p>
      * Taken into account the fact that with publishing a Tridion item
      * the full document is to be indexed,
      * an update is essentially the same as an addition.
-     * Partial updates can be implemented here if the need arises
+     * Updates listed in partialUpdates are sent as atomic updates of just
+     * their changed fields instead, if field digests of the document are known
+     * for the url, i.e. it was sent there before. An atomic update of a
+     * document missing from the index would create a document of only those
+     * fields, so the others are sent in full.
+     * <p>
+     * Solr rebuilds the document of an atomic update from its stored fields and
+     * docValues, silently dropping any other field, so the schema must store
+     * every field. Atomic updates Solr answers with 400 Bad Request are sent
+     * in full.
      *
      * @throws ParserConfigurationException ParserConfigurationException
      * @throws IOException                  IOException
      * @throws SAXException                 SAXException
      * @throws SolrServerException          SolrServerException
      */
-    private void processItemUpdates(String solrUrl)
+    private void processItemUpdates(Iterable<SolrInputDocument> updates, Map<String, ArrayList<String>> partialUpdates,
+                                    String publicationId, String solrUrl)
+            throws ParserConfigurationException, IOException, SAXException, SolrServerException {
+        if (partialUpdates.isEmpty()) {
+            this.commitAddContentToSolr(updates, publicationId, solrUrl);
+            return;
+        }
+
+        ArrayList<SolrInputDocument> fullUpdates = new ArrayList<>();
+        DocumentBatcher batcher = this.newBatcher(solrUrl);
+        for (SolrInputDocument document : updates) {
+            String id = (String) document.getFieldValue("id");
+            if (!partialUpdates.containsKey(id) || !this.hasFieldDigests(solrUrl, id)) {
+                fullUpdates.add(document);
+                continue;
+            }
+            ArrayList<SolrInputDocument> documents = batcher.add(document);
+            if (documents != null) {
+                this.dispatchAtomicUpdates(documents, partialUpdates, publicationId, solrUrl);
+                this.adaptBatcher(batcher, solrUrl);
+            }
+        }
+        ArrayList<SolrInputDocument> documents = batcher.flush();
+        if (documents != null) {
+            this.dispatchAtomicUpdates(documents, partialUpdates, publicationId, solrUrl);
+        }
+        this.commitAddContentToSolr(fullUpdates, publicationId, solrUrl);
+    }
+
+    private boolean hasFieldDigests(String solrUrl, String id) {
+        return this.fieldDigestStore != null && this.fieldDigestStore.get(DigestStore.key(solrUrl, id)) != null;
+    }
+
+    private void dispatchAtomicUpdates(ArrayList<SolrInputDocument> documents,
+                                       Map<String, ArrayList<String>> partialUpdates, String publicationId,
+                                       String solrUrl)
             throws ParserConfigurationException, IOException, SAXException, SolrServerException {
-        this.commitAddContentToSolr(this.itemUpdates, solrUrl);
+        ArrayList<SolrInputDocument> atomicUpdates = new ArrayList<>(documents.size());
+        for (SolrInputDocument document : documents) {
+            atomicUpdates.add(toAtomicUpdate(document, partialUpdates.get((String) document.getFieldValue("id"))));
+        }
+        try {
+            this.dispatchAddContentToSolr(atomicUpdates, publicationId, solrUrl);
+        } catch (SolrServerException | SolrException e) {
+            if (!isBadRequest(e)) {
+                throw e;
+            }
+            LOG.warn("Solr rejected atomic updates, sending the " + documents.size() + " documents in full: " +
+                    e.getMessage());
+            this.dispatchAddContentToSolr(documents, publicationId, solrUrl);
+        }
+    }
+
+    private static SolrInputDocument toAtomicUpdate(SolrInputDocument document, List<String> changedFields) {
+        SolrInputDocument update = new SolrInputDocument();
+        update.setField("id", document.getFieldValue("id"));
+        update.setField("pubdate", Collections.singletonMap("set", document.getFieldValue("pubdate")));
+        for (String field : changedFields) {
+            // Fields no longer present have no values, setting them to null removes them
+            Collection<Object> values = document.getFieldValues(field);
+            update.setField(field, Collections.singletonMap("set", values));
+        }
+        return update;
     }
 
-    private void commitAddBinariesToSolr(String solrUrl)
+    private static boolean isBadRequest(Throwable t) {
+        for (Throwable cause = t; cause != null && cause.getCause() != cause; cause = cause.getCause()) {
+            if (cause instanceof SolrException &&
+                    ((SolrException) cause).code() == SolrException.ErrorCode.BAD_REQUEST.code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commitAddBinariesToSolr(Map<String, BinaryDocument> binaries, String publicationId, String solrUrl)
             throws SolrServerException, IOException, ParserConfigurationException, SAXException {
-        if (this.binaryAdds.size() > 0) {
+        if (binaries.size() > 0) {
             LOG.info("Adding binaries to Solr.");
 
-            LOG.info(SolrIndexDispatcher.INSTANCE.addBinaries(binaryAdds, new SolrClientRequest(solrUrl)));
+            LOG.info(SolrIndexDispatcher.INSTANCE.addBinaries(binaries, this.createClientRequest(solrUrl, publicationId)));
         }
     }
 
-    private void commitAddContentToSolr(ConcurrentHashMap<String, SearchIndexData> itemsToAdd, String solrUrl)
+    private void commitAddContentToSolr(Iterable<SolrInputDocument> documentsToAdd, String publicationId,
+                                        String solrUrl)
             throws SolrServerException, IOException, ParserConfigurationException, SAXException {
-        int itemAddsize = itemsToAdd.size();
-        if (itemAddsize > 0) {
-            LOG.info("Adding pages and component presentations to Solr in batches of 10");
-
-            ArrayList<ArrayList<SolrInputDocument>> groupedDocuments = new ArrayList<>();
-            int step = 0;
-            int i = 0;
-
-            groupedDocuments.add(new ArrayList<>());
-            for (Map.Entry<String, SearchIndexData> entry : itemsToAdd.entrySet()) {
-                if (i % 10 == 0 && itemAddsize > 10) {
-                    step++;
-                    groupedDocuments.add(new ArrayList<>());
-                }
-                SearchIndexData data = entry.getValue();
-                groupedDocuments.get(step).add(constructInputDocument(data));
-                i++;
+        DocumentBatcher batcher = this.newBatcher(solrUrl);
+        int steps = 0;
+        for (SolrInputDocument document : documentsToAdd) {
+            if (steps == 0 && !batcher.hasDocuments()) {
+                LOG.info("Adding pages and component presentations to Solr in batches of " +
+                        batcher.getMaxDocuments());
+            }
+            ArrayList<SolrInputDocument> documents = batcher.add(document);
+            if (documents != null) {
+                this.dispatchAddContentToSolr(documents, publicationId, solrUrl);
+                this.adaptBatcher(batcher, solrUrl);
+                steps++;
             }
-            LOG.trace(groupedDocuments.toString());
-            this.dispatchAddContentToSolr(groupedDocuments, solrUrl);
+        }
+        ArrayList<SolrInputDocument> documents = batcher.flush();
+        if (documents != null) {
+            this.dispatchAddContentToSolr(documents, publicationId, solrUrl);
+            steps++;
+        }
+        if (steps > 0) {
+            LOG.info("Dispatched documents in " + steps + " steps.");
         }
     }
 
-    private void dispatchAddContentToSolr(ArrayList<ArrayList<SolrInputDocument>> groupedDocuments, String solrUrl)
+    /**
+     * @return a batcher with the current batch limits of the url
+     */
+    private DocumentBatcher newBatcher(String solrUrl) {
+        if (!this.adaptiveBatching) {
+            return new DocumentBatcher(this.batchSize, this.maxBatchBytes);
+        }
+        AdaptiveBatchSize size = this.batchSizeOf(solrUrl);
+        return new DocumentBatcher(size.getMaxDocuments(), size.getMaxBytes());
+    }
+
+    private void adaptBatcher(DocumentBatcher batcher, String solrUrl) {
+        if (this.adaptiveBatching) {
+            AdaptiveBatchSize size = this.batchSizeOf(solrUrl);
+            batcher.setLimits(size.getMaxDocuments(), size.getMaxBytes());
+        }
+    }
+
+    private AdaptiveBatchSize batchSizeOf(String solrUrl) {
+        return this.batchSizes.computeIfAbsent(solrUrl, url -> new AdaptiveBatchSize(url, this.batchSize,
+                this.minBatchSize, this.maxBatchSize, this.minBatchBytes, this.maxBatchBytes, this.targetBatchLatency));
+    }
+
+    /**
+     * Sends a batch. With adaptive batching the time the successful request
+     * took, or its failure, adapts the batch limits of the url. Waiting to be
+     * admitted and backing off between retries say nothing about how fast
+     * Solr handles the batch, so they are left out.
+     */
+    private void dispatchAddContentToSolr(ArrayList<SolrInputDocument> documents, String publicationId, String solrUrl)
             throws ParserConfigurationException, IOException, SAXException, SolrServerException {
-        LOG.info("Dispatching documents in " + groupedDocuments.size() + " steps.");
+        if (documents.size() > 0) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace(documents.toString());
+            }
+            DispatcherPackage dispatcherPackage =
+                    new DispatcherPackage(DispatcherAction.PERSIST, this.createClientRequest(solrUrl, publicationId),
+                            documents);
+            if (!this.adaptiveBatching) {
+                LOG.info(SolrIndexDispatcher.INSTANCE.addDocuments(dispatcherPackage));
+                return;
+            }
 
-        for (ArrayList<SolrInputDocument> documents : groupedDocuments) {
-            if (documents.size() > 0) {
-                DispatcherPackage dispatcherPackage =
-                        new DispatcherPackage(DispatcherAction.PERSIST, new SolrClientRequest(solrUrl), documents);
+            AdaptiveBatchSize size = this.batchSizeOf(solrUrl);
+            try {
                 LOG.info(SolrIndexDispatcher.INSTANCE.addDocuments(dispatcherPackage));
+            } catch (SolrServerException | IOException | SolrException e) {
+                // A rejected batch says nothing about the load on Solr
+                if (RetryPolicy.isTransient(e)) {
+                    size.onFailure();
+                }
+                throw e;
+            }
+            long bytes = 0;
+            if (this.maxBatchBytes > 0) {
+                for (SolrInputDocument document : documents) {
+                    bytes += DocumentBatcher.estimateSize(document);
+                }
             }
+            size.onSuccess(documents.size(), bytes, dispatcherPackage.getRequestTime());
         }
     }
 
-    private static SolrInputDocument constructInputDocument(SearchIndexData data) {
-        SolrInputDocument doc = new SolrInputDocument();
-        doc.addField("pubdate", "NOW");
-        LOG.info("Adding Id: " + data.getUniqueIndexId());
-        doc.addField("id", data.getUniqueIndexId());
-
+    /**
+     * Builds the Solr document of an item. The field map is sized up front
+     * and every field is set in one go: single values as is, multiple values
+     * as a copy of the value list. Fields holding collections, arrays or nulls
+     * are added value by value instead, which flattens them the way adding
+     * each value with addField does.
+     */
+    static SolrInputDocument constructInputDocument(SearchIndexData data) {
         ConcurrentHashMap<String, ArrayList<Object>> fieldList = data.getIndexFields();
+        int capacity = (int) ((fieldList.size() + 2) / 0.75f) + 1;
+        SolrInputDocument doc = new SolrInputDocument(new LinkedHashMap<>(capacity));
+        doc.setField("pubdate", "NOW");
+        doc.setField("id", data.getUniqueIndexId());
 
+        boolean trace = LOG.isTraceEnabled();
+        if (trace) {
+            LOG.trace("Adding Id: " + data.getUniqueIndexId());
+        }
         for (Entry<String, ArrayList<Object>> fieldEntry : fieldList.entrySet()) {
             String fieldName = fieldEntry.getKey();
-            for (Object o : fieldEntry.getValue()) {
-                doc.addField(fieldName, o);
-                LOG.trace("Adding: " + fieldName + ": " + o);
+            ArrayList<Object> values = fieldEntry.getValue();
+            if (values == null || values.isEmpty()) {
+                continue;
+            }
+            SolrInputField field = new SolrInputField(fieldName);
+            if (isPlain(values)) {
+                field.setValue(values.size() == 1 ? values.get(0) : new ArrayList<>(values));
+            } else {
+                for (Object value : values) {
+                    if (field.getValue() == null) {
+                        // Like addField, the first value and any value after a null are set as is, but
+                        // a collection is copied so adding to it leaves the item untouched
+                        field.setValue(value instanceof Collection ? new ArrayList<>((Collection<?>) value) : value);
+                    } else {
+                        field.addValue(value);
+                    }
+                }
+            }
+            doc.put(fieldName, field);
+            if (trace) {
+                LOG.trace("Adding: " + fieldName + ": " + values);
             }
         }
         return doc;
     }
 
-    private void removeItemsFromSolr(String solrUrl)
+    /**
+     * @return true if none of the values is null or holds values of its own
+     */
+    private static boolean isPlain(List<Object> values) {
+        for (Object value : values) {
+            if (value == null || value instanceof Iterable || value instanceof Object[]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes items by id, in chunks. When a large transaction with nothing
+     * but removals covers every document of the publication in the index, the
+     * publication is deleted with a single delete-by-query instead.
+     *
+     * @param byQuery whether to consider deleting the publication by query
+     */
+    private void removeItemsFromSolr(Set<String> removals, boolean byQuery, String publicationId, String solrUrl)
             throws SolrServerException, IOException, ParserConfigurationException, SAXException {
-        if (this.itemRemovals.size() > 0) {
-            LOG.info(SolrIndexDispatcher.INSTANCE
-                    .removeFromSolr(this.itemRemovals.keySet(), new SolrClientRequest(solrUrl)));
+        if (removals.isEmpty()) {
+            return;
+        }
+        Set<String> remaining = removals;
+        if (byQuery && this.deleteByQueryThreshold > 0 && removals.size() >= this.deleteByQueryThreshold &&
+                !Utils.StringIsNullOrEmpty(publicationId)) {
+            remaining = this.removePublicationByQuery(removals, publicationId, solrUrl);
+        }
+        if (!remaining.isEmpty()) {
+            LOG.info(SolrIndexDispatcher.INSTANCE.removeFromSolr(remaining, this.createClientRequest(solrUrl,
+                    publicationId)));
         }
     }
 
+    /**
+     * Deletes the documents of a publication by query, if all of its documents
+     * the index knows of are among the removals.
+     * <p>
+     * Documents which are added but not committed yet do not show up in the
+     * query, yet would be deleted. Hence this is only done with a commit
+     * strategy which commits every transaction, and not while flushed items
+     * of the publication wait for their commit.
+     *
+     * @return the removals still to be deleted by id
+     */
+    private Set<String> removePublicationByQuery(Set<String> removals, String publicationId, String solrUrl)
+            throws SolrServerException, IOException {
+        if ((this.commitStrategy != CommitStrategy.HARD && this.commitStrategy != CommitStrategy.SOFT) ||
+                this.flushedPublications.contains(publicationId) || this.isStaging(solrUrl)) {
+            return removals;
+        }
+        SolrClientRequest clientRequest = this.createClientRequest(solrUrl, publicationId);
+        List<String> indexed = SolrIndexDispatcher.INSTANCE.findIds(this.publicationIdField, publicationId,
+                removals.size(), clientRequest);
+        if (indexed == null || indexed.isEmpty() || !removals.containsAll(indexed)) {
+            LOG.debug("Removals do not cover publication ID " + publicationId + ", deleting by id");
+            return removals;
+        }
+
+        LOG.info("Removing all " + indexed.size() + " documents of publication ID " + publicationId + " by query");
+        LOG.info(SolrIndexDispatcher.INSTANCE.removeByQuery(
+                this.publicationIdField + ":" + ClientUtils.escapeQueryChars(publicationId), clientRequest));
+        Set<String> remaining = new HashSet<>(removals);
+        remaining.removeAll(indexed);
+        return remaining;
+    }
+
     /*
      * (non-Javadoc)
      * @see com.tridion.storage.si4t.SearchIndex#destroy()
      */
     @Override
     public void destroy() {
+        if (this.journalReplayer != null) {
+            this.journalReplayer.shutdown();
+        }
+        if (this.fanOutRetrier != null) {
+            this.fanOutRetrier.shutdown();
+            this.fanOutExecutor.shutdown();
+        }
+        if (this.binaryExtractor != null) {
+            this.binaryExtractor.shutdown();
+        }
+        if (this.fingerprintStore != null) {
+            this.fingerprintStore.save();
+        }
+        if (this.fieldDigestStore != null) {
+            this.fieldDigestStore.save();
+        }
         SolrIndexDispatcher.INSTANCE.destroyServers();
     }
 }
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.impl.ConcurrentUpdateSolrClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * StreamingSolrClient.
+ *
+ * Queue based update client. Updates are streamed to Solr by background runner
+ * threads, which means failures do not surface at the caller. They are collected
+ * here instead and drained when the transaction is committed.
+ *
+ * The runner threads do not know which request failed, so a client only
+ * collects the failures of whoever queued updates on it. The dispatcher keeps
+ * a client per publication for that reason.
+ *
+ * @author agent
+ */
+public class StreamingSolrClient extends ConcurrentUpdateSolrClient
+{
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOG = LoggerFactory.getLogger(StreamingSolrClient.class);
+	private static final int MAX_COLLECTED_ERRORS = 100;
+
+	private final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+	public StreamingSolrClient(ConcurrentUpdateSolrClient.Builder builder)
+	{
+		super(builder);
+	}
+
+	@Override
+	public void handleError(Throwable ex)
+	{
+		LOG.error("Error streaming update to Solr: " + ex.getMessage(), ex);
+		if (errors.size() < MAX_COLLECTED_ERRORS)
+		{
+			errors.add(ex);
+		}
+	}
+
+	/**
+	 * Returns and clears the errors collected by the runner threads.
+	 *
+	 * @return the collected errors, empty if none occurred
+	 */
+	public List<Throwable> drainErrors()
+	{
+		List<Throwable> drained = new ArrayList<>();
+		Throwable t;
+		while ((t = errors.poll()) != null)
+		{
+			drained.add(t);
+		}
+		return drained;
+	}
+}
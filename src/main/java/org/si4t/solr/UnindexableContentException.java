@@ -0,0 +1,37 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+/**
+ * UnindexableContentException.
+ *
+ * Thrown when an item cannot be indexed because of its own content, such as a
+ * binary without content. Sending it again fails the same way, so it is never
+ * retried. It is unchecked so it also surfaces while iterating the documents
+ * of a transaction.
+ *
+ * @author agent
+ */
+public class UnindexableContentException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public UnindexableContentException(String message)
+	{
+		super(message);
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CircuitBreakerTest.
+ *
+ * @author agent
+ */
+public class CircuitBreakerTest
+{
+	private static final long OPEN_TIME = 50;
+
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void opensAfterThresholdOfFailures()
+	{
+		CircuitBreaker breaker = this.breaker(3, OPEN_TIME);
+
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void successResetsTheFailureCount()
+	{
+		CircuitBreaker breaker = this.breaker(2, OPEN_TIME);
+
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void letsOneProbeThroughOnceHalfOpen()
+	{
+		CircuitBreaker breaker = opened();
+		this.now.addAndGet(OPEN_TIME);
+
+		assertTrue(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void closesWhenTheProbeSucceeds()
+	{
+		CircuitBreaker breaker = opened();
+		this.now.addAndGet(OPEN_TIME);
+		breaker.allowRequest();
+
+		breaker.recordSuccess();
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void opensAgainWhenTheProbeFails()
+	{
+		CircuitBreaker breaker = opened();
+		this.now.addAndGet(OPEN_TIME);
+		breaker.allowRequest();
+
+		breaker.recordFailure();
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void opensAgainWhenTheProbeIsLost()
+	{
+		CircuitBreaker breaker = opened();
+		this.now.addAndGet(OPEN_TIME);
+		breaker.allowRequest();
+
+		this.now.addAndGet(OPEN_TIME);
+		assertFalse(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		this.now.addAndGet(OPEN_TIME);
+		assertTrue(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+	}
+
+	@Test
+	public void isDisabledWithoutThreshold()
+	{
+		CircuitBreaker breaker = this.breaker(0, OPEN_TIME);
+		for (int i = 0; i < 10; i++)
+		{
+			breaker.recordFailure();
+		}
+
+		assertTrue(breaker.allowRequest());
+	}
+
+	private CircuitBreaker breaker(int threshold, long openTime)
+	{
+		return new CircuitBreaker("test", threshold, openTime, this.now::get);
+	}
+
+	private CircuitBreaker opened()
+	{
+		CircuitBreaker breaker = this.breaker(1, OPEN_TIME);
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		return breaker;
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * DocumentBatcherTest.
+ *
+ * @author agent
+ */
+public class DocumentBatcherTest
+{
+	@Test
+	public void splitsByDocumentCount()
+	{
+		List<List<SolrInputDocument>> batches = batch(new DocumentBatcher(3, 0), documents(7, 10));
+
+		assertEquals(3, batches.size());
+		assertEquals(3, batches.get(0).size());
+		assertEquals(3, batches.get(1).size());
+		assertEquals(1, batches.get(2).size());
+	}
+
+	@Test
+	public void splitsByBytes()
+	{
+		List<SolrInputDocument> documents = documents(5, 100);
+		long size = DocumentBatcher.estimateSize(documents.get(0));
+
+		List<List<SolrInputDocument>> batches = batch(new DocumentBatcher(100, 2 * size + 1), documents);
+
+		assertEquals(3, batches.size());
+		assertEquals(2, batches.get(0).size());
+		assertEquals(2, batches.get(1).size());
+		assertEquals(1, batches.get(2).size());
+	}
+
+	@Test
+	public void sendsDocumentLargerThanTheLimitOnItsOwn()
+	{
+		List<SolrInputDocument> documents = documents(1, 10);
+		documents.addAll(documents(1, 1000));
+		documents.addAll(documents(1, 10));
+		long limit = DocumentBatcher.estimateSize(documents.get(1)) / 2;
+
+		List<List<SolrInputDocument>> batches = batch(new DocumentBatcher(100, limit), documents);
+
+		assertEquals(3, batches.size());
+		assertEquals(documents.get(1), batches.get(1).get(0));
+	}
+
+	@Test
+	public void flushesNothingWhenEmpty()
+	{
+		DocumentBatcher batcher = new DocumentBatcher(10, 0);
+
+		assertFalse(batcher.hasDocuments());
+		assertNull(batcher.flush());
+	}
+
+	private static List<List<SolrInputDocument>> batch(DocumentBatcher batcher, List<SolrInputDocument> documents)
+	{
+		List<List<SolrInputDocument>> batches = new ArrayList<>();
+		for (SolrInputDocument document : documents)
+		{
+			List<SolrInputDocument> batch = batcher.add(document);
+			if (batch != null)
+			{
+				batches.add(batch);
+			}
+		}
+		List<SolrInputDocument> batch = batcher.flush();
+		if (batch != null)
+		{
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	private static List<SolrInputDocument> documents(int count, int bodyLength)
+	{
+		List<SolrInputDocument> documents = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			SolrInputDocument document = new SolrInputDocument();
+			document.setField("id", "tcm:5-" + i + "-64");
+			StringBuilder body = new StringBuilder(bodyLength);
+			for (int j = 0; j < bodyLength; j++)
+			{
+				body.append('x');
+			}
+			document.setField("body", body.toString());
+			documents.add(document);
+		}
+		return documents;
+	}
+}
@@ -0,0 +1,1092 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.solr.client.solrj.request.JavaBinUpdateRequestCodec;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.noggit.ObjectBuilder;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FakeSolrServer.
+ *
+ * In-process stand-in for Solr, listening on a free local port, so the
+ * dispatcher can be exercised and measured without a live Solr.
+ *
+ * It understands update requests in javabin, XML and JSON, including
+ * deletes, commits and optimizes, extract requests and simple select
+ * queries. Everything received is recorded, and the documents are kept in
+ * an in-memory index per core, which select queries are answered from.
+ * Latency, failures and 503 responses can be injected. Several of them can
+ * act as the nodes of a SolrCloud cluster, see setClusterState.
+ *
+ * @author agent
+ */
+public class FakeSolrServer
+{
+	/**
+	 * A request as it was received.
+	 */
+	public static class ReceivedRequest
+	{
+		private final String core;
+		private final String handler;
+		private final Map<String, List<String>> params;
+		private final String contentType;
+		private final long contentLength;
+		private final int status;
+		private final List<SolrInputDocument> documents = new ArrayList<>();
+		private final List<String> deleteIds = new ArrayList<>();
+		private final List<String> deleteQueries = new ArrayList<>();
+		private boolean commit;
+		private boolean optimize;
+		private int commitWithin = -1;
+
+		ReceivedRequest(String core, String handler, Map<String, List<String>> params, String contentType, long contentLength, int status)
+		{
+			this.core = core;
+			this.handler = handler;
+			this.params = params;
+			this.contentType = contentType;
+			this.contentLength = contentLength;
+			this.status = status;
+		}
+
+		public String getCore()
+		{
+			return core;
+		}
+
+		/**
+		 * @return the request handler, e.g. update, update/extract or select
+		 */
+		public String getHandler()
+		{
+			return handler;
+		}
+
+		public Map<String, List<String>> getParams()
+		{
+			return params;
+		}
+
+		public String getParam(String name)
+		{
+			List<String> values = params.get(name);
+			return values == null || values.isEmpty() ? null : values.get(0);
+		}
+
+		public String getContentType()
+		{
+			return contentType;
+		}
+
+		public long getContentLength()
+		{
+			return contentLength;
+		}
+
+		/**
+		 * @return the status code the request was answered with
+		 */
+		public int getStatus()
+		{
+			return status;
+		}
+
+		public List<SolrInputDocument> getDocuments()
+		{
+			return documents;
+		}
+
+		public List<String> getDeleteIds()
+		{
+			return deleteIds;
+		}
+
+		public List<String> getDeleteQueries()
+		{
+			return deleteQueries;
+		}
+
+		public boolean isCommit()
+		{
+			return commit;
+		}
+
+		public boolean isOptimize()
+		{
+			return optimize;
+		}
+
+		/**
+		 * @return the commitWithin of the request in milliseconds, or -1 if it has none
+		 */
+		public int getCommitWithin()
+		{
+			return commitWithin;
+		}
+
+		public boolean isExtract()
+		{
+			return handler.startsWith("update/extract");
+		}
+
+		@Override
+		public String toString()
+		{
+			return "ReceivedRequest [core=" + core + ", handler=" + handler + ", status=" + status + ", documents=" +
+					documents.size() + ", deleteIds=" + deleteIds.size() + ", deleteQueries=" + deleteQueries +
+					", commit=" + commit + ", optimize=" + optimize + ", contentLength=" + contentLength + "]";
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ConcurrentLinkedQueue<ReceivedRequest> received = new ConcurrentLinkedQueue<>();
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, SolrInputDocument>> cores = new ConcurrentHashMap<>();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong bytesReceived = new AtomicLong();
+	private final AtomicInteger failuresToInject = new AtomicInteger();
+	private volatile int injectedStatus = 503;
+	private volatile double errorRate = 0;
+	private volatile int errorRateStatus = 503;
+	private volatile long latency;
+	private volatile CountDownLatch hold = null;
+	private final AtomicInteger held = new AtomicInteger();
+	private volatile boolean recording = true;
+	private volatile Map<String, Object> collections = null;
+	private volatile List<String> liveNodes = Collections.emptyList();
+
+	public FakeSolrServer(long latency, int threads) throws IOException
+	{
+		this.latency = latency;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, r ->
+		{
+			Thread t = new Thread(r, "fake-solr-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/", this::handle);
+	}
+
+	public FakeSolrServer start()
+	{
+		this.server.start();
+		return this;
+	}
+
+	public void stop()
+	{
+		this.release();
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * @param core the core name
+	 * @return the url to configure as the core url
+	 */
+	public String getCoreUrl(String core)
+	{
+		return this.getBaseUrl() + "/" + core;
+	}
+
+	/**
+	 * @return the base url of the node, as configured in CloudUrls
+	 */
+	public String getBaseUrl()
+	{
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/solr";
+	}
+
+	/**
+	 * @return the name of the node in the cluster state and the live nodes
+	 */
+	public String getNodeName()
+	{
+		return "127.0.0.1:" + this.server.getAddress().getPort() + "_solr";
+	}
+
+	/**
+	 * Makes the server act as a node of a SolrCloud cluster. It answers the
+	 * CLUSTERSTATUS and LISTALIASES requests of the collections API with the
+	 * given state, and refuses requests to cores the state does not place on
+	 * this node with a 404, like a node a replica was moved away from. Give
+	 * every node of the cluster the same state.
+	 *
+	 * @param collections the state of every collection by name, as in state.json, including its znodeVersion
+	 * @param liveNodes the names of the live nodes
+	 */
+	public void setClusterState(Map<String, Object> collections, List<String> liveNodes)
+	{
+		this.liveNodes = new ArrayList<>(liveNodes);
+		this.collections = collections;
+	}
+
+	/**
+	 * @param latency milliseconds every request is delayed before it is answered
+	 */
+	public void setLatency(long latency)
+	{
+		this.latency = latency;
+	}
+
+	/**
+	 * Holds every request until {@link #release()}, like a replica which is
+	 * stuck, without relying on timing.
+	 */
+	public void hold()
+	{
+		this.hold = new CountDownLatch(1);
+	}
+
+	public void release()
+	{
+		CountDownLatch hold = this.hold;
+		this.hold = null;
+		if (hold != null)
+		{
+			hold.countDown();
+		}
+	}
+
+	/**
+	 * @return the amount of requests being held
+	 */
+	public int getHeld()
+	{
+		return this.held.get();
+	}
+
+	/**
+	 * Answers the next requests with an error status, e.g. 503 to make them
+	 * look transient or 400 to reject them.
+	 */
+	public void failNext(int count, int status)
+	{
+		this.injectedStatus = status;
+		this.failuresToInject.set(count);
+	}
+
+	/**
+	 * Answers a random share of the requests with an error status.
+	 *
+	 * @param rate the share of failing requests, between 0 and 1
+	 */
+	public void setErrorRate(double rate, int status)
+	{
+		this.errorRateStatus = status;
+		this.errorRate = rate;
+	}
+
+	/**
+	 * Recording keeps every received document in memory; turn it off for long
+	 * running load tests. The counters and the index are kept regardless.
+	 */
+	public void setRecording(boolean recording)
+	{
+		this.recording = recording;
+	}
+
+	public List<ReceivedRequest> getReceived()
+	{
+		return new ArrayList<>(this.received);
+	}
+
+	/**
+	 * @return the documents added through update requests, in the order received
+	 */
+	public List<SolrInputDocument> getReceivedDocuments()
+	{
+		List<SolrInputDocument> documents = new ArrayList<>();
+		for (ReceivedRequest request : this.received)
+		{
+			if (request.getStatus() == 200)
+			{
+				documents.addAll(request.getDocuments());
+			}
+		}
+		return documents;
+	}
+
+	public int getCommits()
+	{
+		int commits = 0;
+		for (ReceivedRequest request : this.received)
+		{
+			if (request.getStatus() == 200 && (request.isCommit() || request.isOptimize()))
+			{
+				commits++;
+			}
+		}
+		return commits;
+	}
+
+	/**
+	 * @return the documents currently in the in-memory index of a core, by id
+	 */
+	public Map<String, SolrInputDocument> getIndex(String core)
+	{
+		return Collections.unmodifiableMap(this.coreIndex(core));
+	}
+
+	public long getRequests()
+	{
+		return requests.get();
+	}
+
+	public long getBytesReceived()
+	{
+		return bytesReceived.get();
+	}
+
+	/**
+	 * Clears the recorded requests, the counters and the index.
+	 */
+	public void reset()
+	{
+		this.received.clear();
+		this.cores.clear();
+		this.requests.set(0);
+		this.bytesReceived.set(0);
+		this.failuresToInject.set(0);
+		this.errorRate = 0;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			// The path is /solr/<core>/<handler>
+			String[] path = exchange.getRequestURI().getPath().split("/", 4);
+			String core = path.length > 2 ? path[2] : "";
+			String handler = path.length > 3 ? path[3] : "";
+			Map<String, List<String>> params = parseParams(exchange.getRequestURI().getRawQuery());
+			String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			byte[] body = readBody(exchange);
+			if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded"))
+			{
+				// Requests without a body of their own, like commits, post their parameters as a form
+				params.putAll(parseParams(new String(body, StandardCharsets.UTF_8)));
+			}
+
+			if (this.collections != null && "admin".equals(core) && handler.startsWith("collections"))
+			{
+				// Not delayed nor counted, so latency and the counters apply to the cores only
+				String wt = first(params, "wt");
+				this.record(new ReceivedRequest(core, handler, params, contentType, body.length, 200));
+				respond(exchange, 200, wt, this.collectionsResponse(first(params, "action"), first(params, "collection")));
+				return;
+			}
+
+			this.requests.incrementAndGet();
+			this.bytesReceived.addAndGet(body.length);
+			if (this.latency > 0)
+			{
+				Thread.sleep(this.latency);
+			}
+			CountDownLatch hold = this.hold;
+			if (hold != null)
+			{
+				this.held.incrementAndGet();
+				try
+				{
+					hold.await();
+				}
+				finally
+				{
+					this.held.decrementAndGet();
+				}
+			}
+
+			String wt = first(params, "wt");
+			int status = this.nextStatus();
+			if (status == 200 && !this.hosts(core))
+			{
+				status = 404;
+			}
+			ReceivedRequest request = new ReceivedRequest(core, handler, params, contentType, body.length, status);
+			if (status != 200)
+			{
+				this.record(request);
+				respond(exchange, status, wt, errorResponse(status, "Injected failure"));
+				return;
+			}
+
+			NamedList<Object> response = okResponse();
+			try
+			{
+				if (handler.startsWith("update/extract"))
+				{
+					this.extract(request);
+				}
+				else if (handler.startsWith("update"))
+				{
+					this.update(request, body, contentType);
+				}
+				else if (handler.startsWith("select"))
+				{
+					response.add("response", this.select(core, first(params, "q"), first(params, "rows")));
+				}
+			}
+			catch (Exception e)
+			{
+				ReceivedRequest rejected = new ReceivedRequest(core, handler, params, contentType, body.length, 400);
+				this.record(rejected);
+				respond(exchange, 400, wt, errorResponse(400, "Could not parse request: " + e.getMessage()));
+				return;
+			}
+
+			this.record(request);
+			respond(exchange, 200, wt, response);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private int nextStatus()
+	{
+		if (this.failuresToInject.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0)
+		{
+			return this.injectedStatus;
+		}
+		if (this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate)
+		{
+			return this.errorRateStatus;
+		}
+		return 200;
+	}
+
+	private void record(ReceivedRequest request)
+	{
+		if (this.recording)
+		{
+			this.received.add(request);
+		}
+	}
+
+	private void extract(ReceivedRequest request)
+	{
+		// Index the literals, the extracted text is not of interest here
+		SolrInputDocument document = new SolrInputDocument();
+		for (Map.Entry<String, List<String>> param : request.getParams().entrySet())
+		{
+			if (param.getKey().startsWith("literal."))
+			{
+				for (String value : param.getValue())
+				{
+					document.addField(param.getKey().substring("literal.".length()), value);
+				}
+			}
+		}
+		if (document.getFieldValue("id") == null)
+		{
+			throw new IllegalArgumentException("Extract request without literal.id");
+		}
+		request.getDocuments().add(document);
+		this.apply(request);
+		this.applyCommitParams(request);
+	}
+
+	private void update(ReceivedRequest request, byte[] body, String contentType) throws Exception
+	{
+		if (body.length > 0 && contentType != null && !contentType.startsWith("application/x-www-form-urlencoded"))
+		{
+			if (contentType.contains("javabin"))
+			{
+				this.parseJavabin(request, body);
+			}
+			else if (contentType.contains("json"))
+			{
+				this.parseJson(request, ObjectBuilder.fromJSON(new String(body, StandardCharsets.UTF_8)));
+			}
+			else
+			{
+				this.parseXml(request, DocumentBuilderFactory.newInstance().newDocumentBuilder()
+						.parse(new ByteArrayInputStream(body)).getDocumentElement());
+			}
+		}
+		this.apply(request);
+		this.applyCommitParams(request);
+	}
+
+	private void applyCommitParams(ReceivedRequest request)
+	{
+		if (request.getParam("commitWithin") != null)
+		{
+			request.commitWithin = Integer.parseInt(request.getParam("commitWithin"));
+		}
+		if ("true".equals(request.getParam("commit")) || "true".equals(request.getParam("softCommit")))
+		{
+			request.commit = true;
+		}
+		if ("true".equals(request.getParam("optimize")))
+		{
+			request.optimize = true;
+		}
+	}
+
+	private void parseJavabin(ReceivedRequest request, byte[] body) throws IOException
+	{
+		UpdateRequest update = new JavaBinUpdateRequestCodec().unmarshal(new ByteArrayInputStream(body),
+				(document, req, commitWithin, overwrite) ->
+				{
+					request.getDocuments().add(document);
+					if (commitWithin != null && commitWithin > 0)
+					{
+						request.commitWithin = commitWithin;
+					}
+				});
+		if (update.getDeleteById() != null)
+		{
+			request.getDeleteIds().addAll(update.getDeleteById());
+		}
+		if (update.getDeleteQuery() != null)
+		{
+			request.getDeleteQueries().addAll(update.getDeleteQuery());
+		}
+		SolrParams params = update.getParams();
+		if (params != null)
+		{
+			Iterator<String> names = params.getParameterNamesIterator();
+			while (names.hasNext())
+			{
+				String name = names.next();
+				request.getParams().computeIfAbsent(name, key -> new ArrayList<>())
+						.addAll(Arrays.asList(params.getParams(name)));
+			}
+		}
+	}
+
+	private void parseXml(ReceivedRequest request, Element element)
+	{
+		if (element.hasAttribute("commitWithin"))
+		{
+			request.commitWithin = Integer.parseInt(element.getAttribute("commitWithin"));
+		}
+		switch (element.getTagName())
+		{
+			case "add":
+				for (Element doc : children(element, "doc"))
+				{
+					SolrInputDocument document = new SolrInputDocument();
+					for (Element field : children(doc, "field"))
+					{
+						String name = field.getAttribute("name");
+						Object value = "true".equals(field.getAttribute("null")) ? null : field.getTextContent();
+						if (field.hasAttribute("update"))
+						{
+							addAtomicValue(document, name, field.getAttribute("update"), value);
+						}
+						else
+						{
+							document.addField(name, value);
+						}
+					}
+					request.getDocuments().add(document);
+				}
+				break;
+			case "delete":
+				for (Element id : children(element, "id"))
+				{
+					request.getDeleteIds().add(id.getTextContent());
+				}
+				for (Element query : children(element, "query"))
+				{
+					request.getDeleteQueries().add(query.getTextContent());
+				}
+				break;
+			case "commit":
+				request.commit = true;
+				break;
+			case "optimize":
+				request.optimize = true;
+				break;
+			default:
+				// A wrapper, like <update> or <stream>, holding several commands
+				for (Element child : children(element, null))
+				{
+					this.parseXml(request, child);
+				}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void parseJson(ReceivedRequest request, Object json)
+	{
+		if (json instanceof List)
+		{
+			for (Object document : (List<Object>) json)
+			{
+				request.getDocuments().add(toDocument((Map<String, Object>) document));
+			}
+			return;
+		}
+		for (Map.Entry<String, Object> command : ((Map<String, Object>) json).entrySet())
+		{
+			Object value = command.getValue();
+			switch (command.getKey())
+			{
+				case "add":
+					Object document = value instanceof Map && ((Map<String, Object>) value).containsKey("doc") ?
+							((Map<String, Object>) value).get("doc") : value;
+					request.getDocuments().add(toDocument((Map<String, Object>) document));
+					break;
+				case "delete":
+					for (Object delete : value instanceof List ? (List<Object>) value : Collections.singletonList(value))
+					{
+						if (delete instanceof Map && ((Map<String, Object>) delete).containsKey("query"))
+						{
+							request.getDeleteQueries().add(String.valueOf(((Map<String, Object>) delete).get("query")));
+						}
+						else if (delete instanceof Map)
+						{
+							request.getDeleteIds().add(String.valueOf(((Map<String, Object>) delete).get("id")));
+						}
+						else
+						{
+							request.getDeleteIds().add(String.valueOf(delete));
+						}
+					}
+					break;
+				case "commit":
+					request.commit = true;
+					break;
+				case "optimize":
+					request.optimize = true;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown JSON update command " + command.getKey());
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static SolrInputDocument toDocument(Map<String, Object> json)
+	{
+		SolrInputDocument document = new SolrInputDocument();
+		for (Map.Entry<String, Object> field : json.entrySet())
+		{
+			Object value = field.getValue();
+			if (value instanceof Map)
+			{
+				for (Map.Entry<String, Object> modifier : ((Map<String, Object>) value).entrySet())
+				{
+					addAtomicValue(document, field.getKey(), modifier.getKey(), modifier.getValue());
+				}
+			}
+			else if (value instanceof List)
+			{
+				for (Object item : (List<Object>) value)
+				{
+					document.addField(field.getKey(), item);
+				}
+			}
+			else
+			{
+				document.addField(field.getKey(), value);
+			}
+		}
+		return document;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void addAtomicValue(SolrInputDocument document, String field, String modifier, Object value)
+	{
+		Object current = document.getFieldValue(field);
+		if (current instanceof Map && ((Map<String, Object>) current).containsKey(modifier))
+		{
+			// Several values for one modifier, as XML sends them
+			Object values = ((Map<String, Object>) current).get(modifier);
+			List<Object> list = new ArrayList<>();
+			if (values instanceof Collection)
+			{
+				list.addAll((Collection<Object>) values);
+			}
+			else
+			{
+				list.add(values);
+			}
+			list.add(value);
+			((Map<String, Object>) current).put(modifier, list);
+			return;
+		}
+		Map<String, Object> update = new LinkedHashMap<>();
+		update.put(modifier, value);
+		document.setField(field, update);
+	}
+
+	/**
+	 * Applies the adds and deletes of a request to the in-memory index.
+	 * Atomic updates of a known document are merged into it.
+	 */
+	@SuppressWarnings("unchecked")
+	private void apply(ReceivedRequest request)
+	{
+		ConcurrentHashMap<String, SolrInputDocument> index = this.coreIndex(request.getCore());
+		for (SolrInputDocument document : request.getDocuments())
+		{
+			String id = String.valueOf(document.getFieldValue("id"));
+			SolrInputDocument existing = index.get(id);
+			boolean atomic = false;
+			for (SolrInputField field : document)
+			{
+				atomic |= field.getValue() instanceof Map;
+			}
+			if (!atomic || existing == null)
+			{
+				index.put(id, document);
+				continue;
+			}
+			SolrInputDocument merged = existing.deepCopy();
+			for (SolrInputField field : document)
+			{
+				if (!(field.getValue() instanceof Map))
+				{
+					continue;
+				}
+				for (Map.Entry<String, Object> modifier : ((Map<String, Object>) field.getValue()).entrySet())
+				{
+					if ("set".equals(modifier.getKey()))
+					{
+						merged.removeField(field.getName());
+						if (modifier.getValue() != null)
+						{
+							merged.setField(field.getName(), modifier.getValue());
+						}
+					}
+					else if ("add".equals(modifier.getKey()))
+					{
+						merged.addField(field.getName(), modifier.getValue());
+					}
+					else if ("remove".equals(modifier.getKey()))
+					{
+						merged.removeField(field.getName());
+					}
+				}
+			}
+			index.put(id, merged);
+		}
+		for (String id : request.getDeleteIds())
+		{
+			index.remove(id);
+		}
+		for (String query : request.getDeleteQueries())
+		{
+			index.values().removeIf(document -> matches(document, query));
+		}
+	}
+
+	private SolrDocumentList select(String core, String q, String rows)
+	{
+		int limit = rows == null ? 10 : Integer.parseInt(rows);
+		SolrDocumentList results = new SolrDocumentList();
+		long found = 0;
+		for (SolrInputDocument document : this.coreIndex(core).values())
+		{
+			if (q == null || matches(document, q))
+			{
+				if (found++ < limit)
+				{
+					SolrDocument result = new SolrDocument();
+					for (SolrInputField field : document)
+					{
+						result.setField(field.getName(), field.getValue());
+					}
+					results.add(result);
+				}
+			}
+		}
+		results.setNumFound(found);
+		results.setStart(0);
+		return results;
+	}
+
+	/**
+	 * Supports the queries the indexer sends: *:* and field:value.
+	 */
+	private static boolean matches(SolrInputDocument document, String query)
+	{
+		if ("*:*".equals(query.trim()))
+		{
+			return true;
+		}
+		int colon = query.indexOf(':');
+		if (colon < 0)
+		{
+			throw new IllegalArgumentException("Unsupported query " + query);
+		}
+		String field = query.substring(0, colon).trim();
+		String value = query.substring(colon + 1).trim().replaceAll("\\\\(.)", "$1");
+		Collection<Object> values = document.getFieldValues(field);
+		if (values == null)
+		{
+			return false;
+		}
+		for (Object v : values)
+		{
+			if (value.equals(String.valueOf(v)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private NamedList<Object> collectionsResponse(String action, String collection)
+	{
+		NamedList<Object> response = okResponse();
+		if ("LISTALIASES".equals(action))
+		{
+			response.add("aliases", new LinkedHashMap<String, Object>());
+			response.add("properties", new LinkedHashMap<String, Object>());
+			return response;
+		}
+		if (!"CLUSTERSTATUS".equals(action))
+		{
+			throw new IllegalArgumentException("Unsupported collections API action " + action);
+		}
+		// Solr answers with ordered maps, which the cluster state provider expects
+		NamedList<Object> collections = new SimpleOrderedMap<>();
+		for (Map.Entry<String, Object> state : this.collections.entrySet())
+		{
+			if (collection == null || collection.equals(state.getKey()))
+			{
+				collections.add(state.getKey(), state.getValue());
+			}
+		}
+		NamedList<Object> cluster = new SimpleOrderedMap<>();
+		cluster.add("collections", collections);
+		cluster.add("live_nodes", this.liveNodes);
+		cluster.add("properties", new LinkedHashMap<String, Object>());
+		response.add("cluster", cluster);
+		return response;
+	}
+
+	/**
+	 * @return true if the core is a collection, the cluster state places a replica with the core on this node, or the server is no cluster node
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean hosts(String core)
+	{
+		Map<String, Object> collections = this.collections;
+		if (collections == null)
+		{
+			return true;
+		}
+		if (collections.containsKey(core))
+		{
+			// Any node takes requests for a collection by its name
+			return true;
+		}
+		for (Object collection : collections.values())
+		{
+			Map<String, Object> shards = (Map<String, Object>) ((Map<String, Object>) collection).get("shards");
+			for (Object shard : shards.values())
+			{
+				Map<String, Object> replicas = (Map<String, Object>) ((Map<String, Object>) shard).get("replicas");
+				for (Object replica : replicas.values())
+				{
+					Map<String, Object> properties = (Map<String, Object>) replica;
+					if (core.equals(properties.get("core")) && this.getNodeName().equals(properties.get("node_name")))
+					{
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private ConcurrentHashMap<String, SolrInputDocument> coreIndex(String core)
+	{
+		return this.cores.computeIfAbsent(core, key -> new ConcurrentHashMap<>());
+	}
+
+	private static List<Element> children(Element element, String name)
+	{
+		List<Element> children = new ArrayList<>();
+		NodeList nodes = element.getChildNodes();
+		for (int i = 0; i < nodes.getLength(); i++)
+		{
+			Node node = nodes.item(i);
+			if (node instanceof Element && (name == null || name.equals(((Element) node).getTagName())))
+			{
+				children.add((Element) node);
+			}
+		}
+		return children;
+	}
+
+	private static byte[] readBody(HttpExchange exchange) throws IOException
+	{
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = exchange.getRequestBody())
+		{
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				body.write(buffer, 0, read);
+			}
+		}
+		return body.toByteArray();
+	}
+
+	private static Map<String, List<String>> parseParams(String query)
+	{
+		Map<String, List<String>> params = new LinkedHashMap<>();
+		if (query == null || query.isEmpty())
+		{
+			return params;
+		}
+		for (String pair : query.split("&"))
+		{
+			if (pair.isEmpty())
+			{
+				continue;
+			}
+			int eq = pair.indexOf('=');
+			String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+			String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+			params.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+		}
+		return params;
+	}
+
+	private static String first(Map<String, List<String>> params, String name)
+	{
+		List<String> values = params.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	private static NamedList<Object> okResponse()
+	{
+		NamedList<Object> header = new NamedList<>();
+		header.add("status", 0);
+		header.add("QTime", 0);
+		NamedList<Object> response = new NamedList<>();
+		response.add("responseHeader", header);
+		return response;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static NamedList<Object> errorResponse(int status, String message)
+	{
+		NamedList<Object> response = okResponse();
+		((NamedList<Object>) response.get("responseHeader")).setVal(0, status);
+		NamedList<Object> error = new NamedList<>();
+		error.add("msg", message);
+		error.add("code", status);
+		response.add("error", error);
+		return response;
+	}
+
+	/**
+	 * Answers in javabin, unless the client asked for XML or JSON. Those
+	 * answers carry the status only.
+	 */
+	private static void respond(HttpExchange exchange, int status, String wt, NamedList<Object> response) throws IOException
+	{
+		byte[] body;
+		String contentType;
+		Object error = response.get("error");
+		String message = error instanceof NamedList ? String.valueOf(((NamedList<?>) error).get("msg")) : null;
+		if ("json".equals(wt))
+		{
+			contentType = "application/json; charset=UTF-8";
+			body = ("{\"responseHeader\":{\"status\":" + (status == 200 ? 0 : status) + ",\"QTime\":0}" +
+					(message != null ? ",\"error\":{\"msg\":\"" + message.replace("\"", "'") + "\",\"code\":" + status + "}" : "") +
+					"}").getBytes(StandardCharsets.UTF_8);
+		}
+		else if ("xml".equals(wt))
+		{
+			contentType = "application/xml; charset=UTF-8";
+			body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><response><lst name=\"responseHeader\"><int name=\"status\">" +
+					(status == 200 ? 0 : status) + "</int><int name=\"QTime\">0</int></lst>" +
+					(message != null ? "<lst name=\"error\"><str name=\"msg\">" + message.replace("<", "&lt;") +
+							"</str><int name=\"code\">" + status + "</int></lst>" : "") +
+					"</response>").getBytes(StandardCharsets.UTF_8);
+		}
+		else
+		{
+			contentType = "application/octet-stream";
+			ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+			try (JavaBinCodec codec = new JavaBinCodec())
+			{
+				codec.marshal(response, out);
+			}
+			body = out.toByteArray();
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.storage.BinaryContent;
+import com.tridion.storage.si4t.BinaryIndexData;
+import com.tridion.storage.si4t.FactoryAction;
+import com.tridion.storage.si4t.IndexType;
+import com.tridion.storage.si4t.SearchIndexData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * IndexDataGenerator.
+ *
+ * Generates synthetic pages, component presentations and binaries. The
+ * generator is seeded, so every run of a benchmark indexes the same data.
+ *
+ * @author agent
+ */
+public class IndexDataGenerator
+{
+	private static final String[] WORDS = {
+			"tridion", "content", "delivery", "search", "index", "solr", "publication", "component",
+			"presentation", "page", "binary", "schema", "keyword", "category", "metadata", "structure",
+			"group", "template", "deployer", "storage", "field", "value", "query", "document"
+	};
+
+	private final Random random;
+	private final String publicationId;
+	private int sequence = 0;
+
+	public IndexDataGenerator(long seed, String publicationId)
+	{
+		this.random = new Random(seed);
+		this.publicationId = publicationId;
+	}
+
+	/**
+	 * @param fields the number of single valued text fields, next to the fixed fields
+	 * @param bodyWords the number of words in the body field
+	 */
+	public SearchIndexData page(int fields, int bodyWords)
+	{
+		int id = ++sequence;
+		SearchIndexData data = new SearchIndexData(FactoryAction.PERSIST, IndexType.PAGE, publicationId, String.valueOf(id));
+		data.setUniqueIndexId("tcm:" + publicationId + "-" + id + "-64");
+		data.addIndexField("publicationid", publicationId);
+		data.addIndexField("url", "/" + publicationId + "/page-" + id + ".html");
+		data.addIndexField("title", words(6));
+		data.addIndexField("body", words(bodyWords));
+		for (int i = 0; i < 5; i++)
+		{
+			data.addIndexField("keywords", WORDS[random.nextInt(WORDS.length)]);
+		}
+		for (int i = 0; i < fields; i++)
+		{
+			data.addIndexField("field_" + i + "_s", words(3));
+		}
+		return data;
+	}
+
+	public List<SearchIndexData> pages(int count, int fields, int bodyWords)
+	{
+		List<SearchIndexData> pages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			pages.add(this.page(fields, bodyWords));
+		}
+		return pages;
+	}
+
+	public BinaryIndexData binary(int size)
+	{
+		int id = ++sequence;
+		BinaryIndexData data = new BinaryIndexData(FactoryAction.PERSIST, IndexType.BINARY, publicationId, String.valueOf(id));
+		data.setUniqueIndexId("tcm:" + publicationId + "-" + id);
+		data.setIndexUrl("/" + publicationId + "/binaries/file-" + id + ".pdf");
+		data.setFileName("file-" + id + ".pdf");
+		data.setFileSize(String.valueOf(size));
+		data.setFileType("application/pdf");
+		BinaryContent content = new BinaryContent();
+		content.setContent(this.bytes(size));
+		data.setContent(content);
+		return data;
+	}
+
+	public BinaryDocument binaryDocument(int size)
+	{
+		return BinaryDocument.from(this.binary(size));
+	}
+
+	public byte[] bytes(int size)
+	{
+		byte[] bytes = new byte[size];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	private String words(int count)
+	{
+		StringBuilder text = new StringBuilder(count * 9);
+		for (int i = 0; i < count; i++)
+		{
+			if (i > 0)
+			{
+				text.append(' ');
+			}
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.BaseIndexData;
+import com.tridion.storage.si4t.FactoryAction;
+import com.tridion.storage.si4t.IndexType;
+import com.tridion.storage.si4t.SearchIndexData;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IndexRegistersTest.
+ *
+ * @author agent
+ */
+public class IndexRegistersTest
+{
+	private static final String PUBLICATION_ID = "5";
+
+	private final IndexDataGenerator generator = new IndexDataGenerator(42, PUBLICATION_ID);
+
+	@Test
+	public void mergeAddsItemsOfTheOlderSet()
+	{
+		SearchIndexData page = generator.page(3, 20);
+		IndexRegisters older = this.registers();
+		this.add(older, page);
+		IndexRegisters newer = this.registers();
+
+		newer.merge(older);
+
+		assertTrue(newer.getItemAdds().containsKey(page.getUniqueIndexId()));
+		assertEquals(IndexRegisters.estimateSize(page), newer.getPendingBytes());
+	}
+
+	@Test
+	public void mergeKeepsANewerRemovalOverAnOlderAdd()
+	{
+		SearchIndexData page = generator.page(3, 20);
+		IndexRegisters older = this.registers();
+		this.add(older, page);
+		IndexRegisters newer = this.registers();
+		this.remove(newer, page.getUniqueIndexId());
+
+		newer.merge(older);
+
+		assertFalse(newer.getItemAdds().containsKey(page.getUniqueIndexId()));
+		assertTrue(newer.getItemRemovals().containsKey(page.getUniqueIndexId()));
+		assertEquals(IndexRegisters.REMOVAL_SIZE, newer.getPendingBytes());
+	}
+
+	@Test
+	public void mergeKeepsANewerAddOverAnOlderRemoval()
+	{
+		SearchIndexData page = generator.page(3, 20);
+		IndexRegisters older = this.registers();
+		this.remove(older, page.getUniqueIndexId());
+		IndexRegisters newer = this.registers();
+		this.add(newer, page);
+
+		newer.merge(older);
+
+		assertTrue(newer.getItemAdds().containsKey(page.getUniqueIndexId()));
+		assertFalse(newer.getItemRemovals().containsKey(page.getUniqueIndexId()));
+		assertEquals(IndexRegisters.estimateSize(page), newer.getPendingBytes());
+	}
+
+	@Test
+	public void mergeDoesNotCountItemsAlreadyRegistered()
+	{
+		SearchIndexData page = generator.page(3, 20);
+		IndexRegisters older = this.registers();
+		this.add(older, page);
+		IndexRegisters newer = this.registers();
+		this.add(newer, page);
+
+		newer.merge(older);
+
+		assertEquals(1, newer.size());
+		assertEquals(IndexRegisters.estimateSize(page), newer.getPendingBytes());
+	}
+
+	private IndexRegisters registers()
+	{
+		return new IndexRegisters(PUBLICATION_ID);
+	}
+
+	private void add(IndexRegisters registers, SearchIndexData page)
+	{
+		registers.getItemAdds().put(page.getUniqueIndexId(), page);
+		registers.addPendingBytes(IndexRegisters.estimateSize(page));
+	}
+
+	private void remove(IndexRegisters registers, String id)
+	{
+		BaseIndexData data = new BaseIndexData(FactoryAction.REMOVE, IndexType.PAGE, PUBLICATION_ID, id);
+		data.setUniqueIndexId(id);
+		registers.getItemRemovals().put(id, data);
+		registers.addPendingBytes(IndexRegisters.REMOVAL_SIZE);
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.si4t.solr;
+
+import com.tridion.storage.si4t.SearchIndexData;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * InputDocumentTest.
+ *
+ * Checks that SolrIndexer builds the same documents as adding every value
+ * with addField, the way it built them before.
+ *
+ * @author agent
+ */
+public class InputDocumentTest
+{
+	private final IndexDataGenerator generator = new IndexDataGenerator(42, "5");
+
+	@Test
+	public void buildsTheSameDocumentsAsAddField()
+	{
+		for (SearchIndexData page : generator.pages(20, 5, 50))
+		{
+			assertSameDocument(page);
+		}
+	}
+
+	@Test
+	public void keepsASingleValueAsIs()
+	{
+		SearchIndexData page = generator.page(1, 5);
+
+		SolrInputDocument document = SolrIndexer.constructInputDocument(page);
+
+		assertEquals(page.getIndexFields().get("title").get(0), document.getFieldValue("title"));
+		assertSameDocument(page);
+	}
+
+	@Test
+	public void flattensNestedCollectionsAndArrays()
+	{
+		SearchIndexData page = generator.page(0, 5);
+		page.addIndexField("list_ss", new ArrayList<>(Arrays.asList("a", "b")));
+		page.addIndexField("list_ss", "c");
+		page.addIndexField("list_ss", Arrays.asList("d", "e"));
+		page.addIndexField("single_list_ss", Collections.singletonList("f"));
+		page.addIndexField("array_ss", new Object[] { "g", "h" });
+		page.addIndexField("array_ss", new Object[] { "i" });
+
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+				SolrIndexer.constructInputDocument(page).getFieldValues("list_ss"));
+		assertSameDocument(page);
+	}
+
+	@Test
+	public void replacesNullValuesLikeAddField()
+	{
+		SearchIndexData page = generator.page(0, 5);
+		page.addIndexField("null_s", null);
+		page.addIndexField("null_then_value_s", null);
+		page.addIndexField("null_then_value_s", "a");
+		page.addIndexField("value_then_null_ss", "b");
+		page.addIndexField("value_then_null_ss", null);
+
+		assertSameDocument(page);
+	}
+
+	private static void assertSameDocument(SearchIndexData page)
+	{
+		// Built first, as addField adds the values after a collection to that collection of the item
+		SolrInputDocument actual = SolrIndexer.constructInputDocument(page);
+		SolrInputDocument expected = constructWithAddField(page);
+
+		assertEquals(new ArrayList<>(expected.getFieldNames()), new ArrayList<>(actual.getFieldNames()));
+		for (String name : expected.getFieldNames())
+		{
+			assertEquals(name, expected.getFieldValue(name) == null ? null : expected.getField(name).getValue(),
+					actual.getField(name).getValue());
+		}
+	}
+
+	/**
+	 * The document construction before it was optimized, see DocumentConstructionBenchmark.constructLegacy.
+	 */
+	private static SolrInputDocument constructWithAddField(SearchIndexData data)
+	{
+		SolrInputDocument doc = new SolrInputDocument();
+		doc.addField("pubdate", "NOW");
+		doc.addField("id", data.getUniqueIndexId());
+		for (Map.Entry<String, ArrayList<Object>> fieldEntry : data.getIndexFields().entrySet())
+		{
+			for (Object o : fieldEntry.getValue())
+			{
+				doc.addField(fieldEntry.getKey(), o);
+			}
+		}
+		return doc;
+	}
+}
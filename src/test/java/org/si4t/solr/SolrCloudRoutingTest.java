@@ -0,0 +1,231 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.configuration.Configuration;
+import com.tridion.configuration.XMLConfigurationReader;
+import com.tridion.storage.si4t.SearchIndexData;
+import org.apache.solr.common.util.Hash;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SolrCloudRoutingTest.
+ *
+ * Publishes in cloud mode to two {@link FakeSolrServer} nodes holding a
+ * collection of two shards, to check updates go to the shard leaders and the
+ * cluster state is fetched again once the routing turns out to be stale.
+ *
+ * @author agent
+ */
+public class SolrCloudRoutingTest
+{
+	private static final String PUBLICATION_ID = "5";
+	private static final String COLLECTION = "test";
+	private static final long TIMEOUT = 10000;
+
+	// compositeId places ids hashing to a negative value in shard1, the others in shard2
+	private static final String SHARD1_RANGE = "80000000-ffffffff";
+	private static final String SHARD2_RANGE = "0-7fffffff";
+
+	private FakeSolrServer nodeA;
+	private FakeSolrServer nodeB;
+	private SolrIndexer indexer;
+	private File configFile;
+	private IndexDataGenerator generator;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.nodeA = new FakeSolrServer(0, 4).start();
+		this.nodeB = new FakeSolrServer(0, 4).start();
+		this.generator = new IndexDataGenerator(42, PUBLICATION_ID);
+
+		// shard1 is led from node A, with a follower on node B; shard2 is led from node B
+		Map<String, Object> shard1 = shard(SHARD1_RANGE,
+				replica("core_node1", COLLECTION + "_shard1_replica_n1", this.nodeA, true),
+				replica("core_node3", COLLECTION + "_shard1_replica_n3", this.nodeB, false));
+		Map<String, Object> shard2 = shard(SHARD2_RANGE,
+				replica("core_node2", COLLECTION + "_shard2_replica_n2", this.nodeB, true));
+		this.setClusterState(1, shard1, shard2);
+
+		this.configFile = File.createTempFile("si4t-solr-test", ".xml");
+		String xml = "<Storage><Indexer Mode=\"cloud\" DefaultCoreUrl=\"" + COLLECTION + "\" CloudUrls=\"" +
+				this.nodeA.getBaseUrl() + "," + this.nodeB.getBaseUrl() +
+				"\" RetryBackoff=\"1\" MaxRetryBackoff=\"1\" CommitStrategy=\"hard\"/></Storage>";
+		Files.write(this.configFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+		Configuration configuration = new XMLConfigurationReader().readConfiguration(this.configFile.getAbsolutePath());
+		this.indexer = new SolrIndexer();
+		this.indexer.configure(configuration);
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.indexer.destroy();
+		this.nodeA.stop();
+		this.nodeB.stop();
+		this.configFile.delete();
+	}
+
+	@Test
+	public void sendsUpdatesToTheShardLeaders() throws Exception
+	{
+		List<SearchIndexData> pages = this.publish(20);
+
+		Map<String, ?> shard1 = this.nodeA.getIndex(COLLECTION + "_shard1_replica_n1");
+		Map<String, ?> shard2 = this.nodeB.getIndex(COLLECTION + "_shard2_replica_n2");
+		assertFalse(shard1.isEmpty());
+		assertFalse(shard2.isEmpty());
+		assertEquals(pages.size(), shard1.size() + shard2.size());
+		for (SearchIndexData page : pages)
+		{
+			String id = page.getUniqueIndexId();
+			assertTrue(id + " is not on the leader of its shard",
+					inShard1(id) ? shard1.containsKey(id) : shard2.containsKey(id));
+		}
+		assertTrue(this.nodeB.getIndex(COLLECTION + "_shard1_replica_n3").isEmpty());
+	}
+
+	@Test
+	public void refreshesTheClusterStateAfterStaleRouting() throws Exception
+	{
+		this.publish(10);
+		int before = this.nodeA.getIndex(COLLECTION + "_shard1_replica_n1").size();
+
+		// The leader of shard1 moves to node B while an update to node A is under way
+		this.nodeA.setLatency(500);
+		long requests = this.nodeA.getRequests();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<List<SearchIndexData>> publishing = executor.submit(() -> this.publish(20));
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (this.nodeA.getRequests() == requests && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(5);
+		}
+		long statusRequests = this.clusterStatusRequests();
+		Map<String, Object> shard1 = shard(SHARD1_RANGE,
+				replica("core_node3", COLLECTION + "_shard1_replica_n3", this.nodeB, true));
+		Map<String, Object> shard2 = shard(SHARD2_RANGE,
+				replica("core_node2", COLLECTION + "_shard2_replica_n2", this.nodeB, true));
+		this.setClusterState(2, shard1, shard2);
+		List<SearchIndexData> pages = publishing.get(TIMEOUT, TimeUnit.MILLISECONDS);
+		executor.shutdown();
+
+		assertTrue("The stale leader did not refuse the update",
+				this.nodeA.getReceived().stream().anyMatch(request -> request.getStatus() == 404));
+		assertTrue("The cluster state was not fetched again", this.clusterStatusRequests() > statusRequests);
+		assertEquals(before, this.nodeA.getIndex(COLLECTION + "_shard1_replica_n1").size());
+		Map<String, ?> newShard1 = this.nodeB.getIndex(COLLECTION + "_shard1_replica_n3");
+		Map<String, ?> shard2Index = this.nodeB.getIndex(COLLECTION + "_shard2_replica_n2");
+		for (SearchIndexData page : pages)
+		{
+			String id = page.getUniqueIndexId();
+			assertTrue(id + " is not on the new leader of its shard",
+					inShard1(id) ? newShard1.containsKey(id) : shard2Index.containsKey(id));
+		}
+	}
+
+	private List<SearchIndexData> publish(int count) throws Exception
+	{
+		List<SearchIndexData> pages = this.generator.pages(count, 3, 20);
+		for (SearchIndexData page : pages)
+		{
+			this.indexer.addItemToIndex(page);
+		}
+		this.indexer.commit(PUBLICATION_ID);
+		return pages;
+	}
+
+	private long clusterStatusRequests()
+	{
+		return Arrays.asList(this.nodeA, this.nodeB).stream()
+				.flatMap(node -> node.getReceived().stream())
+				.filter(request -> "CLUSTERSTATUS".equals(request.getParam("action")))
+				.count();
+	}
+
+	@SafeVarargs
+	private final void setClusterState(int version, Map<String, Object>... shards)
+	{
+		Map<String, Object> shardMap = new LinkedHashMap<>();
+		for (int i = 0; i < shards.length; i++)
+		{
+			shardMap.put("shard" + (i + 1), shards[i]);
+		}
+		Map<String, Object> collection = new LinkedHashMap<>();
+		collection.put("znodeVersion", version);
+		collection.put("router", Map.of("name", "compositeId"));
+		collection.put("shards", shardMap);
+		Map<String, Object> collections = Map.of(COLLECTION, collection);
+		List<String> liveNodes = Arrays.asList(this.nodeA.getNodeName(), this.nodeB.getNodeName());
+		this.nodeA.setClusterState(collections, liveNodes);
+		this.nodeB.setClusterState(collections, liveNodes);
+	}
+
+	@SafeVarargs
+	private static Map<String, Object> shard(String range, Map.Entry<String, Object>... replicas)
+	{
+		Map<String, Object> replicaMap = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> replica : replicas)
+		{
+			replicaMap.put(replica.getKey(), replica.getValue());
+		}
+		Map<String, Object> shard = new LinkedHashMap<>();
+		shard.put("range", range);
+		shard.put("state", "active");
+		shard.put("replicas", replicaMap);
+		return shard;
+	}
+
+	private static Map.Entry<String, Object> replica(String name, String core, FakeSolrServer node, boolean leader)
+	{
+		Map<String, Object> replica = new LinkedHashMap<>();
+		replica.put("core", core);
+		replica.put("base_url", node.getBaseUrl());
+		replica.put("node_name", node.getNodeName());
+		replica.put("state", "active");
+		replica.put("type", "NRT");
+		if (leader)
+		{
+			replica.put("leader", "true");
+		}
+		return Map.entry(name, replica);
+	}
+
+	private static boolean inShard1(String id)
+	{
+		return Hash.murmurhash3_x86_32(id, 0, id.length(), 0) < 0;
+	}
+}
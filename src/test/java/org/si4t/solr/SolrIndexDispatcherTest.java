@@ -0,0 +1,225 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SolrIndexDispatcherTest.
+ *
+ * Sends update requests to a {@link FakeSolrServer} to check the retries
+ * and the circuit breaker of the dispatcher.
+ *
+ * @author agent
+ */
+public class SolrIndexDispatcherTest
+{
+	private final AtomicLong now = new AtomicLong();
+	private FakeSolrServer server;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.server = new FakeSolrServer(0, 4).start();
+		SolrIndexDispatcher.INSTANCE.setCircuitBreakerClock(this.now::get);
+	}
+
+	@After
+	public void tearDown()
+	{
+		SolrIndexDispatcher.INSTANCE.destroyServers();
+		SolrIndexDispatcher.INSTANCE.setCircuitBreakerClock(System::currentTimeMillis);
+		this.server.stop();
+	}
+
+	@Test
+	public void retriesServiceUnavailable() throws Exception
+	{
+		this.server.failNext(2, 503);
+
+		SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(this.request(3, 0), 5));
+
+		assertEquals(3, this.server.getRequests());
+		assertEquals(5, this.server.getIndex("test").size());
+	}
+
+	@Test
+	public void givesUpAfterMaxRetries()
+	{
+		this.server.failNext(10, 503);
+
+		assertThrows(Exception.class,
+				() -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(this.request(2, 0), 5)));
+		assertEquals(3, this.server.getRequests());
+	}
+
+	@Test
+	public void doesNotRetryBadRequest()
+	{
+		this.server.failNext(1, 400);
+
+		Exception e = assertThrows(Exception.class,
+				() -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(this.request(3, 0), 5)));
+		assertFalse(RetryPolicy.isTransient(e));
+		assertEquals(1, this.server.getRequests());
+		assertTrue(this.server.getIndex("test").isEmpty());
+	}
+
+	@Test
+	public void failsFastWhileTheCircuitIsOpen() throws Exception
+	{
+		SolrClientRequest request = this.request(0, 2);
+		this.server.setErrorRate(1, 503);
+		for (int i = 0; i < 2; i++)
+		{
+			assertThrows(Exception.class, () -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1)));
+		}
+
+		SolrServerException e = assertThrows(SolrServerException.class,
+				() -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1)));
+		assertTrue(e.getMessage().contains("circuit open"));
+		assertEquals(2, this.server.getRequests());
+
+		// Once the open time passed a probe is let through, which closes the circuit again
+		this.server.setErrorRate(0, 503);
+		this.now.addAndGet(request.getCircuitBreakerOpenTime());
+		SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1));
+		SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1));
+		assertEquals(4, this.server.getRequests());
+	}
+
+	@Test
+	public void forgetsOpenCircuitsWhenDestroyed() throws Exception
+	{
+		SolrClientRequest request = this.request(0, 1);
+		request.setCircuitBreakerOpenTime(60000);
+		this.server.setErrorRate(1, 503);
+		assertThrows(Exception.class, () -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1)));
+		assertThrows(CircuitOpenException.class,
+				() -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1)));
+
+		// A reconfigured indexer starts with a closed circuit
+		SolrIndexDispatcher.INSTANCE.destroyServers();
+		this.server.setErrorRate(0, 503);
+		SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1));
+		assertEquals(2, this.server.getRequests());
+	}
+
+	@Test
+	public void deletesInChunks() throws Exception
+	{
+		SolrClientRequest request = this.request(0, 0);
+		request.setDeleteChunkSize(2);
+		Set<String> ids = new LinkedHashSet<>();
+		for (int i = 0; i < 5; i++)
+		{
+			ids.add("tcm:5-" + i + "-64");
+		}
+
+		SolrIndexDispatcher.INSTANCE.removeFromSolr(ids, request);
+
+		assertEquals(3, this.server.getRequests());
+		Set<String> deleted = new HashSet<>();
+		for (FakeSolrServer.ReceivedRequest received : this.server.getReceived())
+		{
+			deleted.addAll(received.getDeleteIds());
+		}
+		assertEquals(ids, deleted);
+	}
+
+	@Test
+	public void sendsFewerRequestsToASlowReplica() throws Exception
+	{
+		FakeSolrServer stuck = new FakeSolrServer(0, 8).start();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try
+		{
+			SolrClientRequest request = this.request(0, 0);
+			request.setSolrUrl(this.server.getCoreUrl("test") + "," + stuck.getCoreUrl("test"));
+			stuck.hold();
+			List<Future<?>> results = new ArrayList<>();
+			for (int i = 0; i < 20; i++)
+			{
+				// Each request is answered, or held by the stuck replica, before the next is sent
+				int held = stuck.getHeld();
+				Future<?> result = executor.submit(() -> SolrIndexDispatcher.INSTANCE.addDocuments(this.addPackage(request, 1)));
+				results.add(result);
+				while (!result.isDone() && stuck.getHeld() == held)
+				{
+					Thread.sleep(1);
+				}
+			}
+
+			// Round-robin would send half of them to the stuck replica; once it holds one, the other is less busy
+			assertTrue("stuck replica got " + stuck.getRequests() + " requests", stuck.getRequests() <= 1);
+			stuck.release();
+			for (Future<?> result : results)
+			{
+				result.get();
+			}
+			assertEquals(20, this.server.getRequests() + stuck.getRequests());
+		}
+		finally
+		{
+			executor.shutdownNow();
+			stuck.stop();
+		}
+	}
+
+	private SolrClientRequest request(int maxRetries, int circuitBreakerThreshold)
+	{
+		SolrClientRequest request = new SolrClientRequest(this.server.getCoreUrl("test"));
+		request.setMaxRetries(maxRetries);
+		request.setRetryBackoff(1);
+		request.setMaxRetryBackoff(1);
+		request.setCircuitBreakerThreshold(circuitBreakerThreshold);
+		request.setCircuitBreakerOpenTime(100);
+		return request;
+	}
+
+	private DispatcherPackage addPackage(SolrClientRequest request, int count)
+	{
+		ArrayList<SolrInputDocument> documents = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			SolrInputDocument document = new SolrInputDocument();
+			document.setField("id", "tcm:5-" + i + "-64");
+			document.setField("title", "Page " + i);
+			documents.add(document);
+		}
+		return new DispatcherPackage(DispatcherAction.PERSIST, request, documents);
+	}
+}
@@ -0,0 +1,352 @@
+/**
+ * Copyright 2026 agent
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.si4t.solr;
+
+import com.tridion.configuration.Configuration;
+import com.tridion.configuration.XMLConfigurationReader;
+import com.tridion.storage.si4t.BinaryIndexData;
+import com.tridion.storage.si4t.IndexingException;
+import com.tridion.storage.si4t.SearchIndexData;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SolrIndexerTest.
+ *
+ * Publishes transactions through SolrIndexer to a {@link FakeSolrServer}.
+ *
+ * @author agent
+ */
+public class SolrIndexerTest
+{
+	private static final String PUBLICATION_ID = "5";
+	private static final long REPLAY_TIMEOUT = 10000;
+
+	private final List<File> files = new ArrayList<>();
+	private FakeSolrServer server;
+	private SolrIndexer indexer;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.server = new FakeSolrServer(0, 4).start();
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (this.indexer != null)
+		{
+			this.indexer.destroy();
+		}
+		this.server.stop();
+		for (File file : this.files)
+		{
+			delete(file);
+		}
+	}
+
+	@Test
+	public void commitsHard() throws Exception
+	{
+		this.indexer = this.configure("CommitStrategy=\"hard\"");
+
+		this.publish(3);
+
+		FakeSolrServer.ReceivedRequest commit = this.lastCommit();
+		assertEquals("true", commit.getParam("commit"));
+		assertFalse("true".equals(commit.getParam("softCommit")));
+		assertEquals(1, this.server.getCommits());
+	}
+
+	@Test
+	public void commitsSoft() throws Exception
+	{
+		this.indexer = this.configure("CommitStrategy=\"soft\"");
+
+		this.publish(3);
+
+		assertEquals("true", this.lastCommit().getParam("softCommit"));
+		assertEquals(1, this.server.getCommits());
+	}
+
+	@Test
+	public void commitsWithin() throws Exception
+	{
+		this.indexer = this.configure("CommitStrategy=\"commitWithin\" CommitWithin=\"5000\"");
+
+		this.publish(3);
+
+		assertEquals(0, this.server.getCommits());
+		for (FakeSolrServer.ReceivedRequest request : this.server.getReceived())
+		{
+			assertEquals(5000, request.getCommitWithin());
+		}
+	}
+
+	@Test
+	public void doesNotCommitWithStrategyNone() throws Exception
+	{
+		this.indexer = this.configure("CommitStrategy=\"none\"");
+
+		this.publish(3);
+
+		assertEquals(0, this.server.getCommits());
+		for (FakeSolrServer.ReceivedRequest request : this.server.getReceived())
+		{
+			assertEquals(-1, request.getCommitWithin());
+		}
+		assertEquals(3, this.server.getIndex("test").size());
+	}
+
+	@Test
+	public void replaysTheJournalAfterAFailure() throws Exception
+	{
+		File journal = this.temporaryDirectory();
+		this.indexer = this.configure("MaxRetries=\"0\" CircuitBreakerThreshold=\"0\" JournalDirectory=\"" +
+				journal.getAbsolutePath() + "\" JournalReplayInterval=\"50\"");
+		this.server.failNext(1, 503);
+
+		// The transaction is in the journal, so the failing dispatch does not fail the commit
+		this.publish(3);
+
+		assertTrue(this.server.getIndex("test").isEmpty());
+		long deadline = System.currentTimeMillis() + REPLAY_TIMEOUT;
+		while (!new IndexJournal(journal).pending().isEmpty() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(20);
+		}
+		assertTrue(new IndexJournal(journal).pending().isEmpty());
+		assertEquals(3, this.server.getIndex("test").size());
+		assertEquals(1, this.server.getCommits());
+	}
+
+	@Test
+	public void setsAsideAJournalEntrySolrRejects() throws Exception
+	{
+		File journal = this.temporaryDirectory();
+		File fingerprints = new File(journal, "fingerprints.bin");
+		this.indexer = this.configure("MaxRetries=\"0\" CircuitBreakerThreshold=\"0\" JournalDirectory=\"" +
+				journal.getAbsolutePath() + "\" JournalReplayInterval=\"60000\" FingerprintFile=\"" +
+				fingerprints.getAbsolutePath() + "\"");
+		this.server.failNext(1, 503);
+		this.publish(3);
+
+		// The pending entry is replayed before the new one, and rejected
+		this.server.failNext(1, 400);
+		this.publish(3);
+
+		long deadline = System.currentTimeMillis() + REPLAY_TIMEOUT;
+		while (!new IndexJournal(journal).pending().isEmpty() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(20);
+		}
+		assertTrue(new IndexJournal(journal).pending().isEmpty());
+		assertEquals(1, journal.listFiles((dir, name) -> name.endsWith(".corrupt")).length);
+		assertEquals(3, this.server.getIndex("test").size());
+
+		// Only the acknowledged entry recorded its fingerprints
+		long requests = this.server.getRequests();
+		this.publish(3);
+		assertEquals(requests, this.server.getRequests());
+	}
+
+	@Test
+	public void failsAndSetsAsideAJournalEntryWithABinaryWithoutContent() throws Exception
+	{
+		File journal = this.temporaryDirectory();
+		this.indexer = this.configure("MaxRetries=\"0\" CircuitBreakerThreshold=\"0\" JournalDirectory=\"" +
+				journal.getAbsolutePath() + "\" JournalReplayInterval=\"60000\"");
+		BinaryIndexData binary = new IndexDataGenerator(7, PUBLICATION_ID).binary(100);
+		binary.setContent(null);
+		this.indexer.addBinaryToIndex(binary);
+
+		try
+		{
+			this.indexer.commit(PUBLICATION_ID);
+			fail("A binary without content should fail the commit");
+		}
+		catch (IndexingException e)
+		{
+			// expected
+		}
+		assertTrue(new IndexJournal(journal).pending().isEmpty());
+		assertEquals(1, journal.listFiles((dir, name) -> name.endsWith(".corrupt")).length);
+
+		// The next entry of the publication is not held back
+		this.publish(3);
+		assertTrue(new IndexJournal(journal).pending().isEmpty());
+		assertEquals(3, this.server.getIndex("test").size());
+	}
+
+	@Test
+	public void sendsChangedFieldsAsAtomicUpdate() throws Exception
+	{
+		File digests = new File(this.temporaryDirectory(), "digests.bin");
+		this.indexer = this.configure("AtomicUpdates=\"true\" FieldDigestFile=\"" + digests.getAbsolutePath() + "\"");
+		this.publish(2);
+
+		List<SearchIndexData> pages = new IndexDataGenerator(42, PUBLICATION_ID).pages(2, 3, 20);
+		pages.get(0).addIndexField("title", "changed");
+		int sent = this.server.getReceivedDocuments().size();
+		for (SearchIndexData page : pages)
+		{
+			this.indexer.updateItemInIndex(page);
+		}
+		this.indexer.commit(PUBLICATION_ID);
+
+		// The unchanged page is not sent, the changed one only with its changed field
+		List<SolrInputDocument> received = this.server.getReceivedDocuments();
+		received = received.subList(sent, received.size());
+		assertEquals(1, received.size());
+		assertTrue(received.get(0).getFieldValue("title") instanceof Map);
+		assertFalse(received.get(0).containsKey("body"));
+		SolrInputDocument document = this.server.getIndex("test").get(pages.get(0).getUniqueIndexId());
+		assertTrue(document.getFieldValues("title").contains("changed"));
+		assertTrue(document.containsKey("body"));
+	}
+
+	@Test
+	public void resendsUnchangedContentToATargetWhichDroppedItsBacklog() throws Exception
+	{
+		FakeSolrServer mirror = new FakeSolrServer(0, 4).start();
+		try
+		{
+			File fingerprints = new File(this.temporaryDirectory(), "fingerprints.bin");
+			this.indexer = this.configure("MaxRetries=\"0\" CircuitBreakerThreshold=\"0\" MaxTargetBacklog=\"1\" " +
+					"TargetRetryInterval=\"50\" FingerprintFile=\"" + fingerprints.getAbsolutePath() + "\"",
+					"<Targets><Target For=\"" + this.server.getCoreUrl("test") + "\" Value=\"" +
+							mirror.getCoreUrl("test") + "\"/></Targets>");
+			mirror.setErrorRate(1, 503);
+			this.publish(3);
+
+			// The second transaction overflows the backlog of the mirror
+			for (SearchIndexData page : new IndexDataGenerator(7, PUBLICATION_ID).pages(6, 3, 20).subList(3, 6))
+			{
+				this.indexer.addItemToIndex(page);
+			}
+			this.indexer.commit(PUBLICATION_ID);
+			assertTrue(mirror.getIndex("test").isEmpty());
+
+			// Once the remaining backlog is resent, content unchanged for the primary url is sent to the mirror
+			mirror.setErrorRate(0, 503);
+			awaitIndexSize(mirror, 3);
+			assertEquals(3, mirror.getIndex("test").size());
+			this.publish(3);
+			awaitIndexSize(mirror, 6);
+			assertEquals(6, mirror.getIndex("test").size());
+		}
+		finally
+		{
+			mirror.stop();
+		}
+	}
+
+	/**
+	 * @param attributes additional attributes of the Indexer element
+	 * @return an indexer sending to the test core of the fake server
+	 */
+	private SolrIndexer configure(String attributes) throws Exception
+	{
+		return this.configure(attributes, "");
+	}
+
+	/**
+	 * @param attributes additional attributes of the Indexer element
+	 * @param children child elements of the Indexer element
+	 */
+	SolrIndexer configure(String attributes, String children) throws Exception
+	{
+		File file = File.createTempFile("si4t-solr-test", ".xml");
+		this.files.add(file);
+		String xml = "<Storage><Indexer Mode=\"http\" DefaultCoreUrl=\"" + this.server.getCoreUrl("test") +
+				"\" RetryBackoff=\"1\" MaxRetryBackoff=\"1\" " + attributes + ">" + children + "</Indexer></Storage>";
+		Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+		Configuration configuration = new XMLConfigurationReader().readConfiguration(file.getAbsolutePath());
+
+		SolrIndexer indexer = new SolrIndexer();
+		indexer.configure(configuration);
+		return indexer;
+	}
+
+	private void publish(int pages) throws Exception
+	{
+		for (SearchIndexData page : new IndexDataGenerator(42, PUBLICATION_ID).pages(pages, 3, 20))
+		{
+			this.indexer.addItemToIndex(page);
+		}
+		this.indexer.commit(PUBLICATION_ID);
+	}
+
+	private static void awaitIndexSize(FakeSolrServer server, int size) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + REPLAY_TIMEOUT;
+		while (server.getIndex("test").size() < size && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(20);
+		}
+	}
+
+	private FakeSolrServer.ReceivedRequest lastCommit()
+	{
+		FakeSolrServer.ReceivedRequest commit = null;
+		for (FakeSolrServer.ReceivedRequest request : this.server.getReceived())
+		{
+			if (request.isCommit())
+			{
+				commit = request;
+			}
+		}
+		assertTrue("No commit received", commit != null);
+		return commit;
+	}
+
+	private File temporaryDirectory() throws IOException
+	{
+		File directory = Files.createTempDirectory("si4t-solr-journal").toFile();
+		this.files.add(directory);
+		return directory;
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}